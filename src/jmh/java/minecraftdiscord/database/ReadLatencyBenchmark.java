@@ -0,0 +1,165 @@
+package minecraftdiscord.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 書き込みが続いている間の読み取りの待ち時間を、読み取り専用接続プールと書き込みスレッドでの読み取りで比較する
+ *
+ * writer は変更前と同じく、書き込みと同じ単一スレッド・同じ接続で読み取る。
+ * 書き込み負荷は別スレッドから統計の書き込み（100行の UPSERT を1トランザクション）を途切れなく投入する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadLatencyBenchmark {
+
+    private static final int PLAYERS = 100;
+    private static final int DAYS = 30;
+    private static final String READ_SQL = "SELECT SUM(kills) FROM stats WHERE player_id = ?";
+    private static final String WRITE_SQL = "INSERT INTO stats (player_id, day, kills) VALUES (?, ?, 1) "
+            + "ON CONFLICT(player_id, day) DO UPDATE SET kills = kills + 1";
+
+    @Param({"pool", "writer"})
+    public String path;
+
+    @Param({"false", "true"})
+    public boolean writeLoad;
+
+    private File directory;
+    private Connection connection;
+    private ExecutorService writer;
+    private PreparedStatement writerRead;
+    private ReadConnectionPool readPool;
+    private Thread writeLoop;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("read-latency").toFile();
+        String url = "jdbc:sqlite:" + new File(directory, "bench.db");
+        List<String> pragmas = List.of("PRAGMA synchronous = NORMAL", "PRAGMA busy_timeout = 5000");
+
+        writer = Executors.newSingleThreadExecutor();
+        connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            for (String pragma : pragmas) {
+                statement.execute(pragma);
+            }
+            statement.execute("CREATE TABLE stats (player_id INTEGER NOT NULL, day INTEGER NOT NULL, "
+                    + "kills INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (player_id, day))");
+        }
+        for (int day = 0; day < DAYS; day++) {
+            writeBatch(day);
+        }
+
+        writerRead = connection.prepareStatement(READ_SQL);
+        readPool = new ReadConnectionPool(Logger.getLogger("ReadLatencyBenchmark"), 2);
+        readPool.open(url, pragmas);
+
+        if (writeLoad) {
+            running = true;
+            writeLoop = new Thread(() -> {
+                while (running) {
+                    CompletableFuture.runAsync(() -> {
+                        try {
+                            writeBatch(DAYS - 1);
+                        } catch (SQLException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, writer).join();
+                }
+            }, "ReadLatencyBenchmark-WriteLoad");
+            writeLoop.start();
+        }
+    }
+
+    // 書き込みスレッドで全プレイヤー分の統計を1トランザクションで加算する
+    private void writeBatch(int day) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(WRITE_SQL)) {
+            for (int player = 0; player < PLAYERS; player++) {
+                ps.setInt(1, player);
+                ps.setInt(2, day);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public long read() {
+        int player = ThreadLocalRandom.current().nextInt(PLAYERS);
+        if (path.equals("pool")) {
+            return readPool.submit(source -> sumKills(source.statement(READ_SQL), player)).join();
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sumKills(writerRead, player);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, writer).join();
+    }
+
+    private static long sumKills(PreparedStatement ps, int player) throws SQLException {
+        ps.setInt(1, player);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        running = false;
+        if (writeLoop != null) {
+            writeLoop.join();
+        }
+        readPool.close();
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        writerRead.close();
+        connection.close();
+        deleteRecursively(directory);
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}
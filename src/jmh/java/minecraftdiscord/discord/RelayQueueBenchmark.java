@@ -0,0 +1,119 @@
+package minecraftdiscord.discord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * レート制限のあるチャンネルの代わりのスタブに、チャット100行を送り切るまでの時間を比較する
+ *
+ * スタブはDiscordのチャンネルの 5件/5秒 を10倍速にした 5件/500ms で、超えた分はJDAと同じく解除まで完了を遅らせる。
+ * queue は DiscordRelayQueue（待ち時間も10倍速にした値）、perLine は変更前と同じく1行ずつ順に送る。
+ * 行は10msごとに届く。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class RelayQueueBenchmark {
+
+    private static final int LINES = 100;
+    private static final long LINE_INTERVAL_MILLIS = 10;
+    private static final int BUCKET_SIZE = 5;
+    private static final long BUCKET_MILLIS = 500;
+    private static final long LATENCY_MILLIS = 20;
+
+    @Param({"queue", "perLine"})
+    public String mode;
+
+    private ScheduledExecutorService stub;
+    private ExecutorService perLineSender;
+    private CountDownLatch delivered;
+
+    // スタブの現在のバケット（開始時刻と送信数）
+    private long bucketStarted;
+    private int bucketCount;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        stub = Executors.newSingleThreadScheduledExecutor();
+        perLineSender = Executors.newSingleThreadExecutor();
+        delivered = new CountDownLatch(LINES);
+        bucketStarted = System.currentTimeMillis();
+        bucketCount = 0;
+    }
+
+    // 送信を受け付け、レート制限を超えた場合はバケットが空くまで完了を遅らせる
+    private CompletableFuture<?> send(RelayMessage message) {
+        long delay = LATENCY_MILLIS;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (now - bucketStarted >= BUCKET_MILLIS) {
+                bucketStarted = now;
+                bucketCount = 0;
+            }
+            if (++bucketCount > BUCKET_SIZE) {
+                delay += bucketStarted + BUCKET_MILLIS - now;
+                bucketStarted += BUCKET_MILLIS;
+                bucketCount = 1;
+            }
+        }
+
+        int lines = message.getContent().split("\n").length;
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        stub.schedule(() -> {
+            for (int i = 0; i < lines; i++) {
+                delivered.countDown();
+            }
+            sent.complete(null);
+        }, delay, TimeUnit.MILLISECONDS);
+        return sent;
+    }
+
+    @Benchmark
+    public long relay() throws InterruptedException {
+        DiscordRelayQueue queue = mode.equals("queue")
+                ? new DiscordRelayQueue(Logger.getLogger("RelayQueueBenchmark"), this::send, 50, 500, 100, 1000)
+                : null;
+
+        for (int i = 0; i < LINES; i++) {
+            RelayMessage line = new RelayMessage(null, null, "**player" + (i % 20) + "**: message number " + i);
+            if (queue != null) {
+                queue.enqueue(line);
+            } else {
+                perLineSender.execute(() -> send(line).join());
+            }
+            Thread.sleep(LINE_INTERVAL_MILLIS);
+        }
+
+        delivered.await();
+        if (queue != null) {
+            queue.close();
+        }
+        return delivered.getCount();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        perLineSender.shutdownNow();
+        stub.shutdownNow();
+    }
+}
@@ -0,0 +1,111 @@
+package minecraftdiscord.listeners;
+
+import minecraftdiscord.database.StatBuffer;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 移動イベント1回あたりの処理時間と割り当て量を、変更前の Location を使う処理と比較する
+ *
+ * どちらもイベントの移動先（to）は事前に生成しておき、イベント自体の生成は含めない。
+ * 割り当て量は gc プロファイラの gc.alloc.rate.norm（B/op）で確認する。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MovementTrackerBenchmark {
+
+    private static final int PLAYERS = 100;
+    // 各プレイヤーが順に辿る移動先（2の累乗）
+    private static final int STEPS = 1024;
+
+    private UUID[] uuids;
+    private Location[] path;
+    private int next;
+
+    // 変更前: 最後の位置を Location の複製で保持し、距離は毎回 StatBuffer に加算する
+    private Map<UUID, Location> lastLocations;
+    private StatBuffer statBuffer;
+
+    // 変更後
+    private MovementTracker tracker;
+
+    @Setup
+    public void setup() {
+        World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> null;
+                });
+
+        path = new Location[STEPS];
+        for (int i = 0; i < STEPS; i++) {
+            // 1歩0.3ブロックで往復する
+            double x = (i < STEPS / 2 ? i : STEPS - i) * 0.3;
+            path[i] = new Location(world, x, 64, i * 0.1);
+        }
+
+        uuids = new UUID[PLAYERS];
+        lastLocations = new HashMap<>();
+        statBuffer = new StatBuffer();
+        tracker = new MovementTracker(100, 10);
+        for (int i = 0; i < PLAYERS; i++) {
+            uuids[i] = UUID.randomUUID();
+            lastLocations.put(uuids[i], path[0].clone());
+            tracker.join(uuids[i], path[0]);
+        }
+    }
+
+    // 次の呼び出しの番号（プレイヤー数 × 移動先の数で一周させ、int のオーバーフローを避ける）
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == PLAYERS * STEPS ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public void locationBased() {
+        int i = nextIndex();
+        UUID uuid = uuids[i % PLAYERS];
+        Location to = path[(i / PLAYERS) & (STEPS - 1)];
+
+        Location lastLoc = lastLocations.get(uuid);
+        if (lastLoc != null) {
+            double distance = 0;
+            if (lastLoc.getWorld().equals(to.getWorld())) {
+                distance = lastLoc.distance(to);
+            }
+            if (distance > 0 && distance < 100) {
+                statBuffer.addDistance(uuid, distance);
+            }
+        }
+        lastLocations.put(uuid, to.clone());
+
+        // 10ブロック移動ごとの座標保存の判定
+        Location lastSavedLoc = lastLocations.get(uuid);
+        if (lastSavedLoc.distanceSquared(to) > 100) {
+            lastLocations.put(uuid, to.clone());
+        }
+    }
+
+    @Benchmark
+    public void movementTracker() {
+        int i = nextIndex();
+        Location to = path[(i / PLAYERS) & (STEPS - 1)];
+        tracker.move(uuids[i % PLAYERS], to.getWorld(), to.getX(), to.getY(), to.getZ());
+    }
+}
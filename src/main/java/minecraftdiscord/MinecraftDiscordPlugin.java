@@ -1,15 +1,41 @@
 package minecraftdiscord;
 
 import minecraftdiscord.commands.PosCommand;
+import minecraftdiscord.database.AdvancementDictionary;
 import minecraftdiscord.database.DatabaseManager;
+import minecraftdiscord.database.LiveStats;
+import minecraftdiscord.database.StatBuffer;
 import minecraftdiscord.discord.DiscordBot;
+import minecraftdiscord.leaderboard.LeaderboardEngine;
 import minecraftdiscord.listeners.MinecraftChatListener;
+import minecraftdiscord.listeners.MovementTracker;
+import minecraftdiscord.listeners.PlayerMoveListener;
 import minecraftdiscord.listeners.PlayerStatListener;
+import minecraftdiscord.profile.MojangProfileLookup;
+import minecraftdiscord.profile.PlayerNameResolver;
+import minecraftdiscord.profile.ProfileLookup;
 import minecraftdiscord.scheduler.DailyStatsTask;
+import minecraftdiscord.scheduler.InboundChatTask;
+import minecraftdiscord.scheduler.MovementSampleTask;
+import minecraftdiscord.scheduler.SessionLedger;
+import minecraftdiscord.scheduler.StatFlushTask;
+import org.bukkit.Bukkit;
+import org.bukkit.NamespacedKey;
+import org.bukkit.advancement.Advancement;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.logging.Logger;
 
 public class MinecraftDiscordPlugin extends JavaPlugin {
@@ -17,11 +43,25 @@ public class MinecraftDiscordPlugin extends JavaPlugin {
     private static MinecraftDiscordPlugin instance;
     private DiscordBot discordBot;
     private DatabaseManager databaseManager;
+    private StatBuffer statBuffer;
+    private MovementTracker movementTracker;
+    private StatFlushTask statFlushTask;
+    private SessionLedger sessionLedger;
+    private InboundChatTask inboundChatTask;
+    private LiveStats liveStats;
+    private PlayerNameResolver nameResolver;
+    private volatile CompletableFuture<AdvancementDictionary> advancementDictionary;
+    // 作り直し中の進捗の辞書（メインスレッド専用）
+    private CompletableFuture<AdvancementDictionary> advancementRefresh;
+    private LeaderboardEngine leaderboardEngine;
     private Logger logger;
     private FileConfiguration config;
 
     @Override
     public void onEnable() {
+        // 各段階の完了までの時間はここから計る
+        long enableStarted = System.nanoTime();
+
         // インスタンスを保存
         instance = this;
         logger = getLogger();
@@ -30,9 +70,46 @@ public class MinecraftDiscordPlugin extends JavaPlugin {
         saveDefaultConfig();
         config = getConfig();
 
-        // データベースマネージャーを初期化
+        // データベースマネージャーを初期化（接続とスキーマの作成はデータベーススレッドで行い、待たない）
         databaseManager = new DatabaseManager(this);
-        databaseManager.initialize();
+        CompletableFuture<Void> databaseReady = databaseManager.initialize();
+        logPhase("データベースの初期化", databaseReady, enableStarted);
+
+        // サーバーに登録されている進捗にIDを割り当てる（データパックの再読み込み後などにも作り直す）
+        logPhase("進捗の同期", refreshAdvancementDictionary(), enableStarted);
+
+        // 統計バッファを初期化
+        statBuffer = new StatBuffer();
+        // 閾値以上の移動はテレポートと見なし、座標は一定距離以上移動したプレイヤーの分だけ保存する
+        movementTracker = new MovementTracker(
+                config.getDouble("stats.max_distance_threshold", 100),
+                config.getDouble("stats.position_update_threshold", 10));
+        statFlushTask = new StatFlushTask(this, statBuffer, movementTracker);
+        sessionLedger = new SessionLedger(this);
+        inboundChatTask = new InboundChatTask(this);
+
+        // ランキングをメモリ上に読み込み、以降は統計の書き込みごとに差分で更新する（集計期間が進んだら読み込み直す）
+        leaderboardEngine = new LeaderboardEngine(this);
+        databaseManager.addFlushListener(leaderboardEngine::applyDeltas);
+        databaseManager.addWindowRollListener(leaderboardEngine::reload);
+        CompletableFuture<Void> leaderboardReady = leaderboardEngine.reload();
+        logPhase("ランキングの読み込み", leaderboardReady, enableStarted);
+
+        // オンライン中のプレイヤーの統計をメモリ上に保持し、コマンドからはデータベースを読まずに返す
+        liveStats = new LiveStats(this);
+        databaseManager.addFlushListener(liveStats::applyFlushed);
+        for (Player player : getServer().getOnlinePlayers()) {
+            liveStats.join(player);
+        }
+
+        // /regist で使うMinecraft IDの索引をバックグラウンドで作成
+        ProfileLookup profileLookup = config.getBoolean("profile.lookup_enabled", true)
+                ? new MojangProfileLookup(logger,
+                        config.getString("profile.lookup_url", "https://api.mojang.com/users/profiles/minecraft/"),
+                        Duration.ofSeconds(Math.max(1, config.getLong("profile.lookup_timeout_seconds", 5))))
+                : ProfileLookup.NONE;
+        nameResolver = new PlayerNameResolver(this, profileLookup);
+        nameResolver.start();
 
         // Discord Botを初期化
         String botToken = config.getString("discord.token");
@@ -44,8 +121,10 @@ public class MinecraftDiscordPlugin extends JavaPlugin {
             return;
         }
 
+        // ゲートウェイへの接続は待たずに残りの準備を進める（起動までのチャットは送信待ちに溜まる）
         discordBot = new DiscordBot(this, botToken, guildId);
-        discordBot.start();
+        CompletableFuture<Void> botReady = discordBot.start();
+        logPhase("Discord Botの起動", botReady, enableStarted);
 
         // コマンドを登録
         Objects.requireNonNull(getCommand("pos")).setExecutor(new PosCommand(this));
@@ -54,10 +133,70 @@ public class MinecraftDiscordPlugin extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new MinecraftChatListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerStatListener(this), this);
 
+        // 移動距離の集計方式（sampled の場合は移動イベントのリスナーを登録しない）
+        if ("sampled".equalsIgnoreCase(config.getString("stats.movement_mode", "event"))) {
+            new MovementSampleTask(this, movementTracker).schedule();
+        } else {
+            getServer().getPluginManager().registerEvents(new PlayerMoveListener(this), this);
+        }
+
+        // 統計バッファの定期書き込みとプレイ時間の定期保存をスケジュール
+        statFlushTask.schedule();
+        sessionLedger.schedule();
+
+        // Discordからのメッセージは毎tickまとめて送る
+        inboundChatTask.schedule();
+
         // 毎日の統計タスクをスケジュール
         new DailyStatsTask(this).schedule();
 
-        logger.info("MinecraftDiscordPluginが有効化されました！");
+        logger.info("MinecraftDiscordPluginが有効化されました！（メインスレッドでの処理: "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enableStarted) + "ms）");
+        logPhase("すべての準備", CompletableFuture.allOf(databaseReady, advancementDictionary, leaderboardReady, botReady), enableStarted);
+    }
+
+    /**
+     * サーバーに登録されている進捗にIDを割り当て、進捗の辞書を作り直す（表示のないレシピ解放などは対象外）
+     * 作成中の場合はその完了を返す。メインスレッドから呼ぶ。
+     */
+    public CompletableFuture<AdvancementDictionary> refreshAdvancementDictionary() {
+        if (advancementRefresh != null && !advancementRefresh.isDone()) {
+            return advancementRefresh;
+        }
+
+        Map<NamespacedKey, String> advancementTitles = new HashMap<>();
+        Iterator<Advancement> advancements = Bukkit.advancementIterator();
+        while (advancements.hasNext()) {
+            Advancement advancement = advancements.next();
+            if (advancement.getDisplay() != null) {
+                advancementTitles.put(advancement.getKey(), advancement.getDisplay().getTitle());
+            }
+        }
+        List<String> advancementKeys = advancementTitles.keySet().stream()
+                .map(NamespacedKey::toString)
+                .collect(Collectors.toList());
+        advancementRefresh = databaseManager.syncAdvancementKeys(advancementKeys)
+                .thenApply(ids -> new AdvancementDictionary(ids, advancementTitles));
+        if (advancementDictionary == null) {
+            advancementDictionary = advancementRefresh;
+        } else {
+            // 作り直している間は以前の辞書を使い、完了したら置き換える（登録済みの進捗のIDは変わらない）
+            advancementRefresh.thenAccept(created -> advancementDictionary = CompletableFuture.completedFuture(created));
+        }
+        return advancementRefresh;
+    }
+
+    // 起動処理の段階が終わったときに、有効化の開始からの時間を記録する（失敗した場合はその旨を記録する）
+    private void logPhase(String phase, CompletableFuture<?> future, long startedNanos) {
+        future.whenComplete((result, e) -> {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                logger.severe(phase + "に失敗しました（有効化の開始から " + elapsedMillis + "ms）: " + cause.getMessage());
+            } else {
+                logger.info(phase + "が完了しました（有効化の開始から " + elapsedMillis + "ms）");
+            }
+        });
     }
 
     @Override
@@ -67,6 +206,14 @@ public class MinecraftDiscordPlugin extends JavaPlugin {
             discordBot.shutdown();
         }
 
+        // オンライン中のプレイヤーのプレイ時間と、バッファに残っている統計を書き込む
+        if (sessionLedger != null) {
+            sessionLedger.checkpointAll();
+        }
+        if (statFlushTask != null) {
+            statFlushTask.flushAll();
+        }
+
         // データベース接続をクローズ
         if (databaseManager != null) {
             databaseManager.close();
@@ -87,4 +234,41 @@ public class MinecraftDiscordPlugin extends JavaPlugin {
     public DatabaseManager getDatabaseManager() {
         return databaseManager;
     }
+
+    public StatBuffer getStatBuffer() {
+        return statBuffer;
+    }
+
+    public MovementTracker getMovementTracker() {
+        return movementTracker;
+    }
+
+    public InboundChatTask getInboundChatTask() {
+        return inboundChatTask;
+    }
+
+    public StatFlushTask getStatFlushTask() {
+        return statFlushTask;
+    }
+
+    public SessionLedger getSessionLedger() {
+        return sessionLedger;
+    }
+
+    public LeaderboardEngine getLeaderboardEngine() {
+        return leaderboardEngine;
+    }
+
+    public LiveStats getLiveStats() {
+        return liveStats;
+    }
+
+    public PlayerNameResolver getNameResolver() {
+        return nameResolver;
+    }
+
+    // 進捗の辞書（作成が終わると完了する）
+    public CompletableFuture<AdvancementDictionary> getAdvancementDictionary() {
+        return advancementDictionary;
+    }
 }
\ No newline at end of file
@@ -1,4 +1,45 @@
 package minecraftdiscord.commands;
 
-public class PosCommand {
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.discord.DiscordBot;
+import org.bukkit.Location;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Minecraft内の /pos コマンド（現在の座標をDiscordに送信する）
+ */
+public class PosCommand implements CommandExecutor {
+
+    private final MinecraftDiscordPlugin plugin;
+
+    public PosCommand(MinecraftDiscordPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!(sender instanceof Player)) {
+            sender.sendMessage("このコマンドはプレイヤーのみ実行できます。");
+            return true;
+        }
+
+        DiscordBot discordBot = plugin.getDiscordBot();
+        if (discordBot == null) {
+            sender.sendMessage("Discordに接続されていません。");
+            return true;
+        }
+
+        Player player = (Player) sender;
+        Location location = player.getLocation();
+        String message = String.format("**%s** の現在の座標: %s (X: %d, Y: %d, Z: %d)",
+                player.getName(), location.getWorld().getName(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        discordBot.sendMessageToDiscord(message);
+
+        sender.sendMessage("現在の座標をDiscordに送信しました。");
+        return true;
+    }
 }
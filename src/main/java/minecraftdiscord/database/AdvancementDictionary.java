@@ -0,0 +1,77 @@
+package minecraftdiscord.database;
+
+import org.bukkit.NamespacedKey;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 進捗のキーと advancement_keys テーブルの整数IDの対応（作成後は変更しないので任意のスレッドから読める）
+ *
+ * 対象はサーバーに登録されている表示付きの進捗（レシピ解放などの表示のないものは含まない）。
+ * 過去に記録されて現在は存在しない進捗もIDは残るが、対象には含めない。
+ */
+public final class AdvancementDictionary {
+
+    private final Map<NamespacedKey, Integer> idByKey = new HashMap<>();
+    private final String[] keyById;
+    private final String[] titleById;
+
+    // 現在のサーバーで対象になっている進捗のID
+    private final BitSet tracked = new BitSet();
+
+    /**
+     * @param idByKeyString データベースに登録されているすべての進捗のID
+     * @param titleByKey    サーバーに登録されている対象の進捗とその表示名
+     */
+    public AdvancementDictionary(Map<String, Integer> idByKeyString, Map<NamespacedKey, String> titleByKey) {
+        int size = idByKeyString.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        this.keyById = new String[size];
+        this.titleById = new String[size];
+        idByKeyString.forEach((key, id) -> keyById[id] = key);
+
+        for (Map.Entry<NamespacedKey, String> entry : titleByKey.entrySet()) {
+            Integer id = idByKeyString.get(entry.getKey().toString());
+            if (id != null) {
+                idByKey.put(entry.getKey(), id);
+                titleById[id] = entry.getValue();
+                tracked.set(id);
+            }
+        }
+    }
+
+    // 対象の進捗のID（対象外の場合は -1）
+    public int idOf(NamespacedKey key) {
+        Integer id = idByKey.get(key);
+        return id != null ? id : -1;
+    }
+
+    public String keyOf(int id) {
+        return id >= 0 && id < keyById.length ? keyById[id] : null;
+    }
+
+    // 表示名（無い場合はキー）
+    public String titleOf(int id) {
+        String title = id >= 0 && id < titleById.length ? titleById[id] : null;
+        return title != null ? title : keyOf(id);
+    }
+
+    public int trackedCount() {
+        return tracked.cardinality();
+    }
+
+    // 解除済みの集合のうち、現在対象になっているもの
+    public BitSet unlocked(BitSet unlockedSet) {
+        BitSet result = (BitSet) unlockedSet.clone();
+        result.and(tracked);
+        return result;
+    }
+
+    // 対象の進捗のうち未解除のもの
+    public BitSet missing(BitSet unlockedSet) {
+        BitSet result = (BitSet) tracked.clone();
+        result.andNot(unlockedSet);
+        return result;
+    }
+}
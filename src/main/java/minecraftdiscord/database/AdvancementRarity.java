@@ -0,0 +1,93 @@
+package minecraftdiscord.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 登録済みプレイヤーのうち各進捗を解除した人数
+ *
+ * 起動時に player_advancements から数え直し、以降は書き込みスレッドでコミット後に差分だけ加算する。
+ * 割合の読み取りは任意のスレッドから呼べる。
+ */
+public final class AdvancementRarity {
+
+    private final StatementSource db;
+
+    // 進捗ID → 解除した登録済みプレイヤーの数（数え直すときは配列ごと差し替える）
+    private volatile AtomicIntegerArray unlockCounts = new AtomicIntegerArray(0);
+    private volatile int registeredPlayers;
+
+    // 数に含めている登録済みプレイヤー（書き込みスレッド専用）
+    private final Set<Integer> registeredPlayerIds = new HashSet<>();
+
+    AdvancementRarity(StatementSource db) {
+        this.db = db;
+    }
+
+    // 登録済みプレイヤーの解除状況から数え直す（書き込みスレッド専用）
+    void rebuild(int idCount) throws SQLException {
+        registeredPlayerIds.clear();
+        PreparedStatement players = db.statement("SELECT player_id FROM players WHERE discord_id IS NOT NULL");
+        try (ResultSet rs = players.executeQuery()) {
+            while (rs.next()) {
+                registeredPlayerIds.add(rs.getInt(1));
+            }
+        }
+
+        AtomicIntegerArray counts = new AtomicIntegerArray(idCount);
+        PreparedStatement unlocked = db.statement(
+                "SELECT a.unlocked FROM player_advancements a JOIN players p ON p.player_id = a.player_id " +
+                        "WHERE p.discord_id IS NOT NULL");
+        try (ResultSet rs = unlocked.executeQuery()) {
+            while (rs.next()) {
+                add(counts, BitSet.valueOf(rs.getBytes(1)));
+            }
+        }
+
+        unlockCounts = counts;
+        registeredPlayers = registeredPlayerIds.size();
+    }
+
+    boolean isRegistered(int playerId) {
+        return registeredPlayerIds.contains(playerId);
+    }
+
+    // 新しく登録されたプレイヤーの解除済みの進捗を数に加える（コミット後に書き込みスレッドから呼ぶ）
+    void addRegistered(int playerId, BitSet unlocked) {
+        if (registeredPlayerIds.add(playerId)) {
+            add(unlockCounts, unlocked);
+            registeredPlayers = registeredPlayerIds.size();
+        }
+    }
+
+    // 登録済みプレイヤーが新しく解除した進捗を数に加える（コミット後に書き込みスレッドから呼ぶ）
+    void addUnlocked(BitSet added) {
+        add(unlockCounts, added);
+    }
+
+    private static void add(AtomicIntegerArray counts, BitSet ids) {
+        for (int id = ids.nextSetBit(0); id >= 0 && id < counts.length(); id = ids.nextSetBit(id + 1)) {
+            counts.incrementAndGet(id);
+        }
+    }
+
+    public int getRegisteredPlayers() {
+        return registeredPlayers;
+    }
+
+    public int getUnlockCount(int advancementId) {
+        AtomicIntegerArray counts = unlockCounts;
+        return advancementId >= 0 && advancementId < counts.length() ? counts.get(advancementId) : 0;
+    }
+
+    // 解除した登録済みプレイヤーの割合（%）
+    public double getUnlockedPercent(int advancementId) {
+        int total = registeredPlayers;
+        return total == 0 ? 0.0 : getUnlockCount(advancementId) * 100.0 / total;
+    }
+}
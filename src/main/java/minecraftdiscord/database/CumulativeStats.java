@@ -0,0 +1,76 @@
+package minecraftdiscord.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * プレイヤーごとの累積統計（player_stats_cumulative）を管理する
+ *
+ * 各行はその日までの合計値を持つため、任意の期間 [from, to] の合計は
+ * 「to以前の最新行 − from より前の最新行」の2回の主キー検索で求められる。
+ * 値が変化した日にだけ行を作り、書き込みスレッドからのみ更新する。
+ */
+class CumulativeStats {
+
+    private final StatementSource db;
+
+    CumulativeStats(StatementSource db) {
+        this.db = db;
+    }
+
+    // ランキングタイプに対応する累積列
+    static String column(String type) {
+        switch (type.toLowerCase()) {
+            case "kill":
+                return "cum_kills";
+            case "distance":
+                return "cum_distance";
+            case "achievements":
+                return "cum_achievements";
+            default:
+                return null;
+        }
+    }
+
+    // 指定日の差分を累積値に加算する（トランザクションは呼び出し側で管理する）
+    void addDelta(int playerId, long epochDay, int kills, double distance, int achievements) throws SQLException {
+        if (kills == 0 && distance == 0 && achievements == 0) {
+            return;
+        }
+
+        // その日の行がなければ直前の累積値で作成する
+        PreparedStatement seed = db.statement(
+                "INSERT OR IGNORE INTO player_stats_cumulative " +
+                        "(player_id, epoch_day, cum_kills, cum_distance, cum_achievements) " +
+                        "SELECT ?, ?, IFNULL(c.cum_kills, 0), IFNULL(c.cum_distance, 0), IFNULL(c.cum_achievements, 0) " +
+                        "FROM (SELECT 1) LEFT JOIN (SELECT cum_kills, cum_distance, cum_achievements " +
+                        "FROM player_stats_cumulative WHERE player_id = ? AND epoch_day < ? " +
+                        "ORDER BY epoch_day DESC LIMIT 1) c");
+        seed.setInt(1, playerId);
+        seed.setLong(2, epochDay);
+        seed.setInt(3, playerId);
+        seed.setLong(4, epochDay);
+        seed.executeUpdate();
+
+        // 時計が戻った場合に備えて、その日以降のすべての行に加算する
+        PreparedStatement add = db.statement(
+                "UPDATE player_stats_cumulative SET cum_kills = cum_kills + ?, " +
+                        "cum_distance = cum_distance + ?, cum_achievements = cum_achievements + ? " +
+                        "WHERE player_id = ? AND epoch_day >= ?");
+        add.setInt(1, kills);
+        add.setDouble(2, distance);
+        add.setInt(3, achievements);
+        add.setInt(4, playerId);
+        add.setLong(5, epochDay);
+        add.executeUpdate();
+    }
+
+    // 登録済みプレイヤーの期間 [from, to] の合計で上位を返すクエリ（パラメータはエポック日の to, from の順）
+    static String rangeTopQuery(String cumColumn, int limit) {
+        String latest = "(SELECT c." + cumColumn + " FROM player_stats_cumulative c " +
+                "WHERE c.player_id = p.player_id AND c.epoch_day %s ? ORDER BY c.epoch_day DESC LIMIT 1)";
+        return "SELECT p.uuid, p.minecraft_name, " +
+                "IFNULL(" + String.format(latest, "<=") + ", 0) - IFNULL(" + String.format(latest, "<") + ", 0) AS total " +
+                "FROM players p WHERE p.discord_id IS NOT NULL AND total > 0.000001 ORDER BY total DESC LIMIT " + limit;
+    }
+}
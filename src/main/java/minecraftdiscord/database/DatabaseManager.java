@@ -1,493 +1,1155 @@
 package minecraftdiscord.database;
 
 import minecraftdiscord.MinecraftDiscordPlugin;
-import org.bukkit.OfflinePlayer;
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 public class DatabaseManager {
 
     private final MinecraftDiscordPlugin plugin;
     private final Logger logger;
+
+    // すべてのJDBC操作はこの専用スレッドで実行する（接続とPreparedStatementはこのスレッドだけが触る）
+    private final ExecutorService executor;
+    private final Map<String, PreparedStatement> statementCache = new HashMap<>();
     private Connection connection;
 
+    // Minecraft UUID → players.player_id（データベーススレッド専用）
+    private final Map<UUID, Integer> playerIds = new HashMap<>();
+
+    // players.player_id → 解除済みの進捗ID（データベーススレッド専用。書き込んだプレイヤーの分だけ読み込む）
+    private final Map<Integer, BitSet> unlockedAdvancements = new HashMap<>();
+
+    // 読み取り専用クエリは別接続のプールで実行し、書き込みを待たせない
+    private final ReadConnectionPool readPool;
+
+    // 週間・月間ランキングの集計テーブル（書き込みスレッドで更新）
+    private final LeaderboardRollups rollups = new LeaderboardRollups(this::statement);
+
+    // 期間指定ランキング用の累積統計（書き込みスレッドで更新）
+    private final CumulativeStats cumulativeStats = new CumulativeStats(this::statement);
+    private final KillTypeCumulative killTypeCumulative = new KillTypeCumulative(this::statement);
+
+    // モブの種類とIDの対応（IDの割り当ては書き込みスレッドで行う）
+    private final KillTypeDictionary killTypes = new KillTypeDictionary(this::statement);
+
+    // 進捗ごとの解除人数（書き込みスレッドで更新し、任意のスレッドから読む）
+    private final AdvancementRarity advancementRarity = new AdvancementRarity(this::statement);
+
+    // 古い日次データの集約（書き込みスレッドで実行）
+    private final StatRetention retention = new StatRetention(this::statement);
+
+    // Discord ID → Minecraft UUID と、オフラインのプレイヤーの今日の統計の読み取りキャッシュ
+    // （登録・統計の書き込みのコミット後に無効化する）
+    private final LookupCache<String, String> discordIdCache;
+    private final LookupCache<String, PlayerData> playerStatsCache;
+
+    // 該当なしを表すキャッシュの値（未連携のユーザーのコマンドでも毎回データベースを読まないようにする。
+    // /regist でキャッシュが無効化されると消える）
+    private static final String UNLINKED_DISCORD_ID = "";
+    private static final PlayerData UNREGISTERED_PLAYER = new PlayerData();
+
+    // 接続・スキーマ作成・読み取り接続の準備が終わると完了する（失敗した場合は例外で完了する）
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    // 統計差分の書き込み完了時に書き込みスレッド上で呼ばれるリスナー
+    private final List<Consumer<Collection<StatDelta>>> flushListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> windowRollListeners = new CopyOnWriteArrayList<>();
+
     public DatabaseManager(MinecraftDiscordPlugin plugin) {
         this.plugin = plugin;
         this.logger = plugin.getLogger();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MinecraftDiscord-Database");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.readPool = new ReadConnectionPool(logger, Math.max(1, plugin.getConfig().getInt("database.read_pool_size", 2)));
+
+        int cacheSize = plugin.getConfig().getInt("database.cache_max_entries", 1000);
+        long cacheTtlMillis = TimeUnit.SECONDS.toMillis(plugin.getConfig().getLong("database.cache_ttl_seconds", 60));
+        this.discordIdCache = new LookupCache<>(cacheSize, cacheTtlMillis);
+        this.playerStatsCache = new LookupCache<>(cacheSize, cacheTtlMillis);
     }
 
-    public void initialize() {
+    /**
+     * 接続とスキーマの作成をデータベーススレッドで開始する（完了を待たずに書き込み・読み取りを投入できる）
+     */
+    public CompletableFuture<Void> initialize() {
         // データベースディレクトリを作成
         File dataFolder = plugin.getDataFolder();
         if (!dataFolder.exists()) {
             dataFolder.mkdirs();
         }
 
-        // SQLiteに接続
-        try {
-            Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + new File(dataFolder, "playerdata.db"));
+        // SQLiteに接続（以降の書き込みはすべてこの後ろに並び、読み取りは完了後に開始する）
+        CompletableFuture.runAsync(() -> {
+            try {
+                Class.forName("org.sqlite.JDBC");
+                String url = "jdbc:sqlite:" + new File(dataFolder, "playerdata.db");
+                connection = DriverManager.getConnection(url);
+
+                // WALモードにして読み取りと書き込みを並行できるようにする
+                List<String> pragmas = connectionPragmas();
+                try (Statement statement = connection.createStatement()) {
+                    // 新しいデータベースのモードはファイルの作成前に決める
+                    enableIncrementalVacuum(statement);
+                    statement.execute("PRAGMA journal_mode = WAL");
+                    for (String pragma : pragmas) {
+                        statement.execute(pragma);
+                    }
+                }
+                KillTypeCodec.registerFunctions(connection);
+
+                // スキーマを最新バージョンまで移行
+                new SchemaMigrator(connection, logger).migrate();
+                killTypes.load();
 
-            // テーブルを作成
-            createTables();
+                // ランキング集計の期間を今日に合わせる
+                inTransaction(() -> rollups.ensureWindows(LocalDate.now()));
 
-            logger.info("データベースに接続しました。");
-        } catch (ClassNotFoundException | SQLException e) {
-            logger.severe("データベース接続中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+                // 読み取り専用接続を開く
+                readPool.open(url, pragmas);
+
+                logger.info("データベースに接続しました。");
+            } catch (ClassNotFoundException | SQLException e) {
+                logger.severe("データベース接続中にエラーが発生しました: " + e.getMessage());
+                e.printStackTrace();
+                // 移行途中のスキーマに書き込まないよう、後ろに並んだ書き込みは接続なしとして扱う
+                closeFailedConnection();
+                throw new CompletionException(e);
+            }
+        }, executor).whenComplete((unused, e) -> {
+            if (e != null) {
+                ready.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                ready.complete(null);
+            }
+        });
+        return ready;
+    }
+
+    // 古いデータの整理で空いた領域を少しずつ解放できるよう、incremental auto_vacuum モードにする
+    // （既存のデータベースは切り替えに全体の VACUUM が必要なため、整理を使う場合だけ初期化中に一度だけ行う）
+    private void enableIncrementalVacuum(Statement statement) throws SQLException {
+        if (!plugin.getConfig().getBoolean("retention.enabled", true)) {
+            return;
+        }
+        try (ResultSet rs = statement.executeQuery("PRAGMA auto_vacuum")) {
+            if (rs.next() && rs.getInt(1) == 2) {
+                return;
+            }
+        }
+
+        statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+        boolean hasTables;
+        try (ResultSet rs = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM sqlite_master)")) {
+            hasTables = rs.next() && rs.getBoolean(1);
+        }
+        // 新しいデータベースはファイルの作成前なので VACUUM なしで切り替わる
+        if (hasTables) {
+            long started = System.nanoTime();
+            statement.execute("VACUUM");
+            logger.info("データベースを incremental auto_vacuum モードに切り替えました（"
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms）。");
         }
     }
 
-    private void createTables() throws SQLException {
-        Statement statement = connection.createStatement();
+    // 初期化に失敗した接続を閉じる（データベーススレッド専用）
+    private void closeFailedConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warning("初期化に失敗した接続を閉じる際にエラーが発生しました: " + e.getMessage());
+        }
+        connection = null;
+    }
 
-        // プレイヤーデータテーブル
-        statement.execute(
-                "CREATE TABLE IF NOT EXISTS players (" +
-                        "minecraft_uuid TEXT PRIMARY KEY, " +
-                        "minecraft_name TEXT, " +
-                        "discord_id TEXT, " +
-                        "registered_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                        ")"
-        );
+    // 初期化に失敗している場合は、データベースを使わずに fallback を返すためにログを出して true を返す
+    private boolean initializationFailed(String errorMessage) {
+        if (!ready.isCompletedExceptionally()) {
+            return false;
+        }
+        logger.warning(errorMessage + "データベースの初期化に失敗しています。");
+        return true;
+    }
 
-        // 統計データテーブル
-        statement.execute(
-                "CREATE TABLE IF NOT EXISTS player_stats (" +
-                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "minecraft_uuid TEXT, " +
-                        "date TEXT, " +
-                        "kills INTEGER DEFAULT 0, " +
-                        "deaths INTEGER DEFAULT 0, " +
-                        "distance_traveled DOUBLE DEFAULT 0, " +
-                        "daily_distance DOUBLE DEFAULT 0, " +
-                        "play_time_minutes INTEGER DEFAULT 0, " +
-                        "achievements_count INTEGER DEFAULT 0, " +
-                        "last_x DOUBLE DEFAULT 0, " +
-                        "last_y DOUBLE DEFAULT 0, " +
-                        "last_z DOUBLE DEFAULT 0, " +
-                        "FOREIGN KEY (minecraft_uuid) REFERENCES players (minecraft_uuid), " +
-                        "UNIQUE (minecraft_uuid, date)" +
-                        ")"
-        );
+    // 初期化が終わると完了する（接続に失敗した場合は例外で完了する）
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
 
-        // 実績テーブル
-        statement.execute(
-                "CREATE TABLE IF NOT EXISTS player_achievements (" +
-                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "minecraft_uuid TEXT, " +
-                        "achievement_key TEXT, " +
-                        "unlocked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                        "FOREIGN KEY (minecraft_uuid) REFERENCES players (minecraft_uuid), " +
-                        "UNIQUE (minecraft_uuid, achievement_key)" +
-                        ")"
-        );
+    // 書き込み・読み取り両方の接続に適用するPRAGMA
+    private List<String> connectionPragmas() {
+        int cacheSizeKb = plugin.getConfig().getInt("database.cache_size_kb", 8192);
+        long mmapSizeBytes = plugin.getConfig().getLong("database.mmap_size_mb", 64) * 1024 * 1024;
+
+        List<String> pragmas = new ArrayList<>();
+        // WALではNORMALでもコミット済みデータは壊れない（電源断時に直近のコミットが失われる可能性のみ）
+        pragmas.add("PRAGMA synchronous = NORMAL");
+        // 負の値はKB単位の指定
+        pragmas.add("PRAGMA cache_size = -" + cacheSizeKb);
+        pragmas.add("PRAGMA mmap_size = " + mmapSizeBytes);
+        pragmas.add("PRAGMA temp_store = MEMORY");
+        pragmas.add("PRAGMA busy_timeout = 5000");
+        return pragmas;
+    }
 
-        statement.close();
+    // 読み取りキャッシュの件数とヒット率をログに出す（日次タスクと終了時に呼ぶ）
+    public void logCacheStats() {
+        logger.info("読み取りキャッシュ Discord ID: " + discordIdCache + " / 統計: " + playerStatsCache);
     }
 
     public void close() {
+        readPool.close();
+        logCacheStats();
+
+        // 先に投入された書き込みがすべて終わってから接続を閉じる
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                logger.info("データベース接続が閉じられました。");
+            executor.execute(() -> {
+                try {
+                    for (PreparedStatement ps : statementCache.values()) {
+                        ps.close();
+                    }
+                    statementCache.clear();
+
+                    if (connection != null && !connection.isClosed()) {
+                        connection.close();
+                        logger.info("データベース接続が閉じられました。");
+                    }
+                } catch (SQLException e) {
+                    logger.severe("データベース接続を閉じる際にエラーが発生しました: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("データベーススレッドの終了待ちがタイムアウトしました。");
             }
-        } catch (SQLException e) {
-            logger.severe("データベース接続を閉じる際にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    // プレイヤー登録
-    public boolean registerPlayer(String minecraftUuid, String minecraftName, String discordId) {
+    @FunctionalInterface
+    private interface SqlTask<T> {
+        T run() throws SQLException;
+    }
+
+    // データベーススレッドで処理を実行し、失敗時はログを出してfallbackを返す
+    private <T> CompletableFuture<T> submit(String errorMessage, T fallback, SqlTask<T> task) {
+        if (initializationFailed(errorMessage)) {
+            return CompletableFuture.completedFuture(fallback);
+        }
         try {
-            PreparedStatement ps = connection.prepareStatement(
-                    "INSERT OR REPLACE INTO players (minecraft_uuid, minecraft_name, discord_id) VALUES (?, ?, ?)"
+            return CompletableFuture.supplyAsync(() -> {
+                if (connection == null) {
+                    logger.severe(errorMessage + "データベースに接続されていません。");
+                    return fallback;
+                }
+                try {
+                    return task.run();
+                } catch (SQLException | RuntimeException e) {
+                    logger.severe(errorMessage + e.getMessage());
+                    e.printStackTrace();
+                    return fallback;
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warning(errorMessage + "データベースは既に閉じられています。");
+            return CompletableFuture.completedFuture(fallback);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    // 書き込みスレッド上で処理を1トランザクションとして実行する
+    // （実行時例外でもロールバックする。そのまま autoCommit を戻すと途中までの書き込みがコミットされるため）
+    private void inTransaction(SqlAction action) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            action.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException | Error e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            // ロールバックで取り消されたプレイヤーID・モブの種類ID・進捗・集計期間を使わないようにする
+            playerIds.clear();
+            unlockedAdvancements.clear();
+            rollups.forgetRolledDay();
+            try {
+                killTypes.reload();
+            } catch (SQLException reloadError) {
+                e.addSuppressed(reloadError);
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // 読み取り接続プールで処理を実行し、失敗時はログを出してfallbackを返す
+    private <T> CompletableFuture<T> read(String errorMessage, T fallback, ReadConnectionPool.ReadTask<T> task) {
+        if (initializationFailed(errorMessage)) {
+            return CompletableFuture.completedFuture(fallback);
+        }
+        // 読み取り接続は初期化の最後に開くため、それまでは投入を待つ
+        return ready.thenCompose(unused -> readPool.submit(task)).exceptionally(e -> {
+            if (initializationFailed(errorMessage)) {
+                return fallback;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                logger.warning(errorMessage + "データベースは既に閉じられています。");
+                return fallback;
+            }
+            logger.severe(errorMessage + cause.getMessage());
+            cause.printStackTrace();
+            return fallback;
+        });
+    }
+
+    // プラグインの稼働中はSQLごとにPreparedStatementを使い回す（データベーススレッド専用）
+    private PreparedStatement statement(String sql) throws SQLException {
+        PreparedStatement ps = statementCache.get(sql);
+        if (ps == null) {
+            ps = connection.prepareStatement(sql);
+            statementCache.put(sql, ps);
+        }
+        return ps;
+    }
+
+    // 今日のエポック日（1970-01-01からの日数）
+    private static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    // UUIDを16バイトのBLOBに変換
+    private static byte[] uuidBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private static UUID uuidFromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    // プレイヤーIDを取得（未登録のプレイヤーは統計用の行を作成する。データベーススレッド専用）
+    private int playerId(UUID uuid) throws SQLException {
+        Integer cached = playerIds.get(uuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] uuidBytes = uuidBytes(uuid);
+        PreparedStatement insert = statement("INSERT OR IGNORE INTO players (uuid) VALUES (?)");
+        insert.setBytes(1, uuidBytes);
+        insert.executeUpdate();
+
+        PreparedStatement select = statement("SELECT player_id FROM players WHERE uuid = ?");
+        select.setBytes(1, uuidBytes);
+        try (ResultSet rs = select.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("プレイヤーIDを取得できませんでした: " + uuid);
+            }
+            int id = rs.getInt(1);
+            playerIds.put(uuid, id);
+            return id;
+        }
+    }
+
+    // プレイヤー登録
+    public CompletableFuture<Boolean> registerPlayer(UUID minecraftUuid, String minecraftName, String discordId) {
+        return submit("プレイヤー登録中にエラーが発生しました: ", false, () -> {
+            // 既存の行はplayer_idを変えずに更新する
+            PreparedStatement ps = statement(
+                    "INSERT INTO players (uuid, minecraft_name, discord_id, registered_at) " +
+                            "VALUES (?, ?, ?, CURRENT_TIMESTAMP) ON CONFLICT (uuid) DO UPDATE SET " +
+                            "minecraft_name = excluded.minecraft_name, discord_id = excluded.discord_id, " +
+                            "registered_at = excluded.registered_at"
             );
-            ps.setString(1, minecraftUuid);
+            ps.setBytes(1, uuidBytes(minecraftUuid));
             ps.setString(2, minecraftName);
             ps.setString(3, discordId);
             ps.executeUpdate();
-            ps.close();
 
             // 今日の統計データがなければ作成
-            ensureTodayStats(minecraftUuid);
+            int playerId = playerId(minecraftUuid);
+            ensureTodayStats(playerId, today());
 
+            // 新しく登録されたプレイヤーの解除済みの進捗を解除人数に加える
+            if (!advancementRarity.isRegistered(playerId)) {
+                advancementRarity.addRegistered(playerId, unlockedSet(playerId));
+            }
+
+            // 連携先が変わった可能性があるため、Discord IDの対応はすべて読み直す
+            discordIdCache.invalidateAll();
+            invalidatePlayerStats(minecraftUuid);
             return true;
-        } catch (SQLException e) {
-            logger.severe("プレイヤー登録中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
+        });
     }
 
-    // 今日の統計データを確保
-    private void ensureTodayStats(String minecraftUuid) throws SQLException {
-        String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+    // コミット後に呼び、キャッシュ済みの今日の統計を捨てる
+    private void invalidatePlayerStats(UUID uuid) {
+        playerStatsCache.invalidate(today() + ":" + uuid);
+    }
 
-        PreparedStatement ps = connection.prepareStatement(
-                "INSERT OR IGNORE INTO player_stats (minecraft_uuid, date) VALUES (?, ?)"
+    // 今日の統計データを確保
+    private void ensureTodayStats(int playerId, long today) throws SQLException {
+        PreparedStatement ps = statement(
+                "INSERT OR IGNORE INTO player_stats (player_id, epoch_day) VALUES (?, ?)"
         );
-        ps.setString(1, minecraftUuid);
-        ps.setString(2, today);
+        ps.setInt(1, playerId);
+        ps.setLong(2, today);
         ps.executeUpdate();
-        ps.close();
     }
 
     // Discord IDからMinecraft UUIDを取得
-    public String getMinecraftUuidByDiscordId(String discordId) {
-        try {
-            PreparedStatement ps = connection.prepareStatement(
-                    "SELECT minecraft_uuid FROM players WHERE discord_id = ?"
+    public CompletableFuture<String> getMinecraftUuidByDiscordId(String discordId) {
+        String cached = discordIdCache.get(discordId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached == UNLINKED_DISCORD_ID ? null : cached);
+        }
+
+        long generation = discordIdCache.generation();
+        return read("Discord IDからMinecraft UUIDを取得中にエラーが発生しました: ", null, db -> {
+            PreparedStatement ps = db.statement(
+                    "SELECT uuid FROM players WHERE discord_id = ?"
             );
             ps.setString(1, discordId);
-            ResultSet rs = ps.executeQuery();
 
-            String uuid = null;
-            if (rs.next()) {
-                uuid = rs.getString("minecraft_uuid");
+            try (ResultSet rs = ps.executeQuery()) {
+                String uuid = rs.next() ? uuidFromBytes(rs.getBytes("uuid")).toString() : null;
+                discordIdCache.put(discordId, uuid != null ? uuid : UNLINKED_DISCORD_ID, generation);
+                return uuid;
             }
+        });
+    }
 
-            rs.close();
-            ps.close();
-            return uuid;
-        } catch (SQLException e) {
-            logger.severe("Discord IDからMinecraft UUIDを取得中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+    // プレイ時間を日ごとにまとめて加算する
+    public CompletableFuture<Void> addPlayTime(Collection<PlaytimeCredit> credits) {
+        if (credits.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
+
+        return submit("プレイ時間更新中にエラーが発生しました: ", null, () -> {
+            PreparedStatement ensure = statement(
+                    "INSERT OR IGNORE INTO player_stats (player_id, epoch_day) VALUES (?, ?)");
+            PreparedStatement update = statement(
+                    "UPDATE player_stats SET play_time_minutes = play_time_minutes + ? WHERE player_id = ? AND epoch_day = ?");
+
+            inTransaction(() -> {
+                try {
+                    for (PlaytimeCredit credit : credits) {
+                        int playerId = playerId(credit.getPlayerUuid());
+
+                        ensure.setInt(1, playerId);
+                        ensure.setLong(2, credit.getEpochDay());
+                        ensure.addBatch();
+
+                        update.setInt(1, credit.getMinutes());
+                        update.setInt(2, playerId);
+                        update.setLong(3, credit.getEpochDay());
+                        update.addBatch();
+                    }
+
+                    ensure.executeBatch();
+                    update.executeBatch();
+                } catch (SQLException e) {
+                    ensure.clearBatch();
+                    update.clearBatch();
+                    throw e;
+                }
+            });
+
+            for (PlaytimeCredit credit : credits) {
+                invalidatePlayerStats(credit.getPlayerUuid());
+            }
+            return null;
+        });
     }
 
-    // キル数を更新
-    public void incrementKills(Player player) {
-        try {
-            String uuid = player.getUniqueId().toString();
-            ensureTodayStats(uuid);
+    /**
+     * 統計差分のコミット後に書き込みスレッド上で呼ばれるリスナーを登録する
+     */
+    public void addFlushListener(Consumer<Collection<StatDelta>> listener) {
+        flushListeners.add(listener);
+    }
 
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+    /**
+     * ランキング集計の期間を日付の変わり目に進めた後（コミット後）に書き込みスレッド上で呼ばれるリスナーを登録する
+     */
+    public void addWindowRollListener(Runnable listener) {
+        windowRollListeners.add(listener);
+    }
 
-            PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE player_stats SET kills = kills + 1 WHERE minecraft_uuid = ? AND date = ?"
-            );
-            ps.setString(1, uuid);
-            ps.setString(2, today);
-            ps.executeUpdate();
-            ps.close();
-        } catch (SQLException e) {
-            logger.severe("キル数更新中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+    // 集計期間を進めたことをリスナーに知らせる（書き込みスレッドでコミット後に呼ぶ）
+    private void notifyWindowRolled() {
+        for (Runnable listener : windowRollListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                logger.severe("ランキング集計の期間を進めた後の処理中にエラーが発生しました: " + e.getMessage());
+                e.printStackTrace();
+            }
         }
     }
 
-    // 死亡回数を更新
-    public void incrementDeaths(Player player) {
-        try {
-            String uuid = player.getUniqueId().toString();
-            ensureTodayStats(uuid);
+    // バッファに溜まった統計差分を1トランザクションでまとめて書き込む
+    public CompletableFuture<Boolean> flushStatDeltas(Collection<StatDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
 
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        return submit("統計データの一括書き込み中にエラーが発生しました: ", false, () -> {
+            LocalDate todayDate = LocalDate.now();
+
+            // 差分は発生した日の行に、日付の古い順に書き込む
+            List<StatDelta> ordered = new ArrayList<>(deltas);
+            ordered.sort(Comparator.comparingLong(StatDelta::getEpochDay));
+
+            PreparedStatement ensure = statement(
+                    "INSERT OR IGNORE INTO player_stats (player_id, epoch_day) VALUES (?, ?)");
+            PreparedStatement update = statement(
+                    "UPDATE player_stats SET kills = kills + ?, deaths = deaths + ?, " +
+                            "distance_traveled = distance_traveled + ?, daily_distance = daily_distance + ?, " +
+                            "achievements_count = achievements_count + ?, " +
+                            "kills_by_type = kill_types_add(kills_by_type, ?) " +
+                            "WHERE player_id = ? AND epoch_day = ?");
+
+            // 登録済みプレイヤーが新しく解除した進捗（コミット後に解除人数へ加える）
+            List<BitSet> rarityUpdates = new ArrayList<>();
+            boolean[] windowRolled = new boolean[1];
+
+            inTransaction(() -> {
+                try {
+                    for (StatDelta delta : ordered) {
+                        long day = delta.getEpochDay();
+                        if (rollups.isBehind(day)) {
+                            // 前の日の分を書き込んでから、集計期間をこの日まで進める
+                            ensure.executeBatch();
+                            update.executeBatch();
+                            windowRolled[0] |= rollups.ensureWindows(LocalDate.ofEpochDay(day));
+                        }
+
+                        int playerId = playerId(delta.getPlayerUuid());
+
+                        // 新しく解除された実績だけをカウントする
+                        int newAchievements = 0;
+                        if (delta.getAchievementIds() != null) {
+                            BitSet added = unlockAdvancements(playerId, delta.getAchievementIds());
+                            newAchievements = added.cardinality();
+                            if (newAchievements > 0 && advancementRarity.isRegistered(playerId)) {
+                                rarityUpdates.add(added);
+                            }
+                        }
+                        delta.newAchievements = newAchievements;
+
+                        ensure.setInt(1, playerId);
+                        ensure.setLong(2, day);
+                        ensure.addBatch();
+
+                        update.setInt(1, delta.getKills());
+                        update.setInt(2, delta.getDeaths());
+                        update.setDouble(3, delta.getDistance());
+                        update.setDouble(4, delta.getDistance());
+                        update.setInt(5, newAchievements);
+                        byte[] killsByType = killTypes.encode(delta.getKillsByType());
+                        update.setBytes(6, killsByType);
+                        update.setInt(7, playerId);
+                        update.setLong(8, day);
+                        update.addBatch();
+
+                        rollups.addDelta(playerId, day, delta.getKills(), delta.getDistance(), newAchievements);
+                        cumulativeStats.addDelta(playerId, day, delta.getKills(), delta.getDistance(), newAchievements);
+                        killTypeCumulative.addDelta(playerId, day, KillTypeCodec.decode(killsByType));
+                    }
+
+                    ensure.executeBatch();
+                    update.executeBatch();
+
+                    // 日付が変わっていればランキング集計の期間を今日に進める
+                    windowRolled[0] |= rollups.ensureWindows(todayDate);
+                } catch (SQLException e) {
+                    ensure.clearBatch();
+                    update.clearBatch();
+                    throw e;
+                }
+            });
 
-            PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE player_stats SET deaths = deaths + 1 WHERE minecraft_uuid = ? AND date = ?"
-            );
-            ps.setString(1, uuid);
-            ps.setString(2, today);
-            ps.executeUpdate();
-            ps.close();
-        } catch (SQLException e) {
-            logger.severe("死亡回数更新中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
+            for (StatDelta delta : deltas) {
+                invalidatePlayerStats(delta.getPlayerUuid());
+            }
+            for (BitSet added : rarityUpdates) {
+                advancementRarity.addUnlocked(added);
+            }
 
-    // 移動距離を更新
-    public void updateDistanceTraveled(Player player, double distance) {
-        try {
-            String uuid = player.getUniqueId().toString();
-            ensureTodayStats(uuid);
+            // コミット済みの差分をメモリ上の集計にも反映する
+            for (Consumer<Collection<StatDelta>> listener : flushListeners) {
+                try {
+                    listener.accept(deltas);
+                } catch (RuntimeException e) {
+                    logger.severe("統計書き込み後の処理中にエラーが発生しました: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            if (windowRolled[0]) {
+                notifyWindowRolled();
+            }
+            return true;
+        });
+    }
 
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+    // 解除済みの進捗（データベーススレッド専用）
+    private BitSet unlockedSet(int playerId) throws SQLException {
+        BitSet unlocked = unlockedAdvancements.get(playerId);
+        if (unlocked == null) {
+            PreparedStatement select = statement("SELECT unlocked FROM player_advancements WHERE player_id = ?");
+            select.setInt(1, playerId);
+            try (ResultSet rs = select.executeQuery()) {
+                unlocked = rs.next() ? BitSet.valueOf(rs.getBytes("unlocked")) : new BitSet();
+            }
+            unlockedAdvancements.put(playerId, unlocked);
+        }
+        return unlocked;
+    }
 
-            PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE player_stats SET distance_traveled = distance_traveled + ?, daily_distance = daily_distance + ? WHERE minecraft_uuid = ? AND date = ?"
-            );
-            ps.setDouble(1, distance);
-            ps.setDouble(2, distance);
-            ps.setString(3, uuid);
-            ps.setString(4, today);
-            ps.executeUpdate();
-            ps.close();
-        } catch (SQLException e) {
-            logger.severe("移動距離更新中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+    // 解除済みの進捗に追加して保存し、新しく解除された進捗を返す（データベーススレッド専用）
+    private BitSet unlockAdvancements(int playerId, BitSet achieved) throws SQLException {
+        BitSet unlocked = unlockedSet(playerId);
+        BitSet added = (BitSet) achieved.clone();
+        added.andNot(unlocked);
+        if (added.isEmpty()) {
+            return added;
         }
+        unlocked.or(added);
+
+        PreparedStatement upsert = statement(
+                "INSERT INTO player_advancements (player_id, unlocked) VALUES (?, ?) " +
+                        "ON CONFLICT (player_id) DO UPDATE SET unlocked = excluded.unlocked");
+        upsert.setInt(1, playerId);
+        upsert.setBytes(2, unlocked.toByteArray());
+        upsert.executeUpdate();
+        return added;
     }
 
-    // プレイ時間を更新
-    public void updatePlayTime(Player player, int minutes) {
-        try {
-            String uuid = player.getUniqueId().toString();
-            ensureTodayStats(uuid);
+    /**
+     * サーバーに登録されている進捗のキーにIDを割り当て、登録済みのすべてのキーとIDを返す
+     * （あわせて進捗ごとの解除人数を数え直す）
+     */
+    public CompletableFuture<Map<String, Integer>> syncAdvancementKeys(Collection<String> keys) {
+        return submit("進捗の辞書の作成中にエラーが発生しました: ", Collections.emptyMap(), () -> {
+            PreparedStatement insert = statement("INSERT OR IGNORE INTO advancement_keys (advancement_key) VALUES (?)");
+            inTransaction(() -> {
+                for (String key : keys) {
+                    insert.setString(1, key);
+                    insert.executeUpdate();
+                }
+            });
 
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+            Map<String, Integer> ids = new HashMap<>();
+            PreparedStatement select = statement("SELECT advancement_id, advancement_key FROM advancement_keys");
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(rs.getString("advancement_key"), rs.getInt("advancement_id"));
+                }
+            }
 
-            PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE player_stats SET play_time_minutes = play_time_minutes + ? WHERE minecraft_uuid = ? AND date = ?"
-            );
-            ps.setInt(1, minutes);
-            ps.setString(2, uuid);
-            ps.setString(3, today);
-            ps.executeUpdate();
-            ps.close();
-        } catch (SQLException e) {
-            logger.severe("プレイ時間更新中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-        }
+            advancementRarity.rebuild(ids.values().stream().mapToInt(Integer::intValue).max().orElse(0) + 1);
+            return ids;
+        });
     }
 
-    // 実績を追加
-    public void addAchievement(Player player, String achievementKey) {
-        try {
-            String uuid = player.getUniqueId().toString();
+    // 日付の変わり目にランキング集計の期間を進める
+    public CompletableFuture<Void> rollLeaderboardWindows() {
+        return submit("ランキング集計の更新中にエラーが発生しました: ", null, () -> {
+            boolean[] windowRolled = new boolean[1];
+            inTransaction(() -> windowRolled[0] = rollups.ensureWindows(LocalDate.now()));
+            if (windowRolled[0]) {
+                notifyWindowRolled();
+            }
+            return null;
+        });
+    }
 
-            // 実績を追加
-            PreparedStatement ps = connection.prepareStatement(
-                    "INSERT OR IGNORE INTO player_achievements (minecraft_uuid, achievement_key) VALUES (?, ?)"
-            );
-            ps.setString(1, uuid);
-            ps.setString(2, achievementKey);
-            int inserted = ps.executeUpdate();
-            ps.close();
+    /**
+     * 古い日次データを週・月単位にまとめ、空き領域をファイルから解放する
+     */
+    public CompletableFuture<Void> runRetention() {
+        if (!plugin.getConfig().getBoolean("retention.enabled", true)) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-            // 新しい実績だったら実績カウントを増やす
-            if (inserted > 0) {
-                ensureTodayStats(uuid);
+        int dailyDays = plugin.getConfig().getInt("retention.daily_days", 90);
+        int weeklyDays = plugin.getConfig().getInt("retention.weekly_days", 365);
+        int vacuumPages = plugin.getConfig().getInt("retention.vacuum_pages", 0);
+
+        return submit("古い統計データの整理中にエラーが発生しました: ", null, () -> {
+            LocalDate todayDate = LocalDate.now();
+            int[] removed = new int[1];
+            boolean[] windowRolled = new boolean[1];
+            inTransaction(() -> {
+                // 集約前にランキング集計の期間を今日に合わせる（集計期間内の日は集約されない）
+                windowRolled[0] = rollups.ensureWindows(todayDate);
+                removed[0] = retention.apply(todayDate, dailyDays, weeklyDays);
+            });
+            if (windowRolled[0]) {
+                notifyWindowRolled();
+            }
 
-                String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+            // 切り替えは初期化中に行う（書き込みスレッドを止める全体の VACUUM はここでは行わない）
+            try (Statement statement = connection.createStatement()) {
+                int autoVacuum;
+                try (ResultSet rs = statement.executeQuery("PRAGMA auto_vacuum")) {
+                    autoVacuum = rs.next() ? rs.getInt(1) : 0;
+                }
+                if (autoVacuum == 2) {
+                    statement.execute("PRAGMA incremental_vacuum" + (vacuumPages > 0 ? "(" + vacuumPages + ")" : ""));
+                }
+            }
 
-                ps = connection.prepareStatement(
-                        "UPDATE player_stats SET achievements_count = achievements_count + 1 WHERE minecraft_uuid = ? AND date = ?"
-                );
-                ps.setString(1, uuid);
-                ps.setString(2, today);
-                ps.executeUpdate();
-                ps.close();
+            logger.info("古い統計データを整理しました。集約・削除した日次データ: " + removed[0] + "行");
+            return null;
+        });
+    }
+
+    /**
+     * 最後に保存された座標（記録がない場合はnull）
+     * （座標を保存していない日の行は初期値の0のままなので除く）
+     */
+    public CompletableFuture<PositionCheckpoint> getLastPosition(String minecraftUuid) {
+        UUID uuid = UUID.fromString(minecraftUuid);
+        return read("座標取得中にエラーが発生しました: ", null, db -> {
+            PreparedStatement ps = db.statement(
+                    "SELECT ps.last_x, ps.last_y, ps.last_z FROM players p " +
+                            "JOIN player_stats ps ON ps.player_id = p.player_id " +
+                            "WHERE p.uuid = ? AND NOT (ps.last_x = 0 AND ps.last_y = 0 AND ps.last_z = 0) " +
+                            "ORDER BY ps.epoch_day DESC LIMIT 1"
+            );
+            ps.setBytes(1, uuidBytes(uuid));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next()
+                        ? new PositionCheckpoint(uuid, rs.getDouble("last_x"), rs.getDouble("last_y"), rs.getDouble("last_z"))
+                        : null;
             }
-        } catch (SQLException e) {
-            logger.severe("実績追加中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-        }
+        });
     }
 
     // 座標を更新
-    public void updatePosition(Player player) {
-        try {
-            String uuid = player.getUniqueId().toString();
-            ensureTodayStats(uuid);
+    public CompletableFuture<Void> updatePosition(Player player) {
+        // Bukkitのオブジェクトは呼び出し元のスレッドで読み取っておく
+        Location location = player.getLocation();
+        return updatePositions(Collections.singletonList(
+                new PositionCheckpoint(player.getUniqueId(), location.getX(), location.getY(), location.getZ())));
+    }
 
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+    // 複数プレイヤーの座標を1トランザクションでまとめて更新する
+    public CompletableFuture<Void> updatePositions(Collection<PositionCheckpoint> positions) {
+        if (positions.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-            PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE player_stats SET last_x = ?, last_y = ?, last_z = ? WHERE minecraft_uuid = ? AND date = ?"
+        return submit("座標更新中にエラーが発生しました: ", null, () -> {
+            long today = today();
+
+            PreparedStatement ensure = statement(
+                    "INSERT OR IGNORE INTO player_stats (player_id, epoch_day) VALUES (?, ?)");
+            PreparedStatement update = statement(
+                    "UPDATE player_stats SET last_x = ?, last_y = ?, last_z = ? WHERE player_id = ? AND epoch_day = ?");
+
+            inTransaction(() -> {
+                try {
+                    for (PositionCheckpoint position : positions) {
+                        int playerId = playerId(position.getPlayerUuid());
+
+                        ensure.setInt(1, playerId);
+                        ensure.setLong(2, today);
+                        ensure.addBatch();
+
+                        update.setDouble(1, position.getX());
+                        update.setDouble(2, position.getY());
+                        update.setDouble(3, position.getZ());
+                        update.setInt(4, playerId);
+                        update.setLong(5, today);
+                        update.addBatch();
+                    }
+
+                    ensure.executeBatch();
+                    update.executeBatch();
+                } catch (SQLException e) {
+                    ensure.clearBatch();
+                    update.clearBatch();
+                    throw e;
+                }
+            });
+
+            for (PositionCheckpoint position : positions) {
+                invalidatePlayerStats(position.getPlayerUuid());
+            }
+            return null;
+        });
+    }
+
+    // 解除済みの進捗ID（未登録のプレイヤーや解除していない場合は空）
+    public CompletableFuture<BitSet> getUnlockedAdvancements(String minecraftUuid) {
+        return read("進捗の取得中にエラーが発生しました: ", new BitSet(), db -> {
+            PreparedStatement ps = db.statement(
+                    "SELECT a.unlocked FROM players p JOIN player_advancements a ON a.player_id = p.player_id " +
+                            "WHERE p.uuid = ? AND p.discord_id IS NOT NULL"
             );
-            ps.setDouble(1, player.getLocation().getX());
-            ps.setDouble(2, player.getLocation().getY());
-            ps.setDouble(3, player.getLocation().getZ());
-            ps.setString(4, uuid);
-            ps.setString(5, today);
-            ps.executeUpdate();
-            ps.close();
-        } catch (SQLException e) {
-            logger.severe("座標更新中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-        }
+            ps.setBytes(1, uuidBytes(UUID.fromString(minecraftUuid)));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? BitSet.valueOf(rs.getBytes("unlocked")) : new BitSet();
+            }
+        });
+    }
+
+    // 名前が分かっているプレイヤーの UUID → Minecraft ID
+    public CompletableFuture<Map<UUID, String>> loadPlayerNames() {
+        return read("プレイヤー名の読み込み中にエラーが発生しました: ", Collections.emptyMap(), db -> {
+            Map<UUID, String> names = new HashMap<>();
+            PreparedStatement ps = db.statement("SELECT uuid, minecraft_name FROM players WHERE minecraft_name IS NOT NULL");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    names.put(uuidFromBytes(rs.getBytes("uuid")), rs.getString("minecraft_name"));
+                }
+            }
+            return names;
+        });
     }
 
     // プレイヤーの統計データを取得
-    public PlayerData getPlayerStats(String minecraftUuid) {
-        try {
-            ensureTodayStats(minecraftUuid);
+    public CompletableFuture<PlayerData> getPlayerStats(String minecraftUuid) {
+        // 日付が変わったら別のキーになる
+        String cacheKey = today() + ":" + minecraftUuid;
+        PlayerData cached = playerStatsCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached == UNREGISTERED_PLAYER ? null : cached);
+        }
 
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        long generation = playerStatsCache.generation();
+        return read("プレイヤー統計取得中にエラーが発生しました: ", null, db -> {
+            // 読み取り専用接続なので今日の行は作らず、まだ無ければ0として扱う
+            PreparedStatement ps = db.statement(
+                    "SELECT p.minecraft_name, ps.* FROM players p " +
+                            "LEFT JOIN player_stats ps ON ps.player_id = p.player_id AND ps.epoch_day = ? " +
+                            "WHERE p.uuid = ? AND p.discord_id IS NOT NULL"
+            );
+            ps.setLong(1, today());
+            ps.setBytes(2, uuidBytes(UUID.fromString(minecraftUuid)));
 
-            PreparedStatement ps = connection.prepareStatement(
+            try (ResultSet rs = ps.executeQuery()) {
+                PlayerData data = rs.next() ? readStatsRow(rs, minecraftUuid) : null;
+                playerStatsCache.put(cacheKey, data != null ? data : UNREGISTERED_PLAYER, generation);
+                return data;
+            }
+        });
+    }
+
+    /**
+     * オンライン中のプレイヤーの指定日の統計を書き込みスレッドで読み込む（未登録のプレイヤーも含む）
+     * （書き込みと同じスレッドで読むことで、この後に登録されたフラッシュの分は含まれない）
+     */
+    public CompletableFuture<PlayerData> loadDayStats(UUID minecraftUuid, long epochDay) {
+        return submit("プレイヤー統計の読み込み中にエラーが発生しました: ", null, () -> {
+            PreparedStatement ps = statement(
                     "SELECT p.minecraft_name, ps.* FROM players p " +
-                            "JOIN player_stats ps ON p.minecraft_uuid = ps.minecraft_uuid " +
-                            "WHERE p.minecraft_uuid = ? AND ps.date = ?"
+                            "LEFT JOIN player_stats ps ON ps.player_id = p.player_id AND ps.epoch_day = ? " +
+                            "WHERE p.uuid = ?"
             );
-            ps.setString(1, minecraftUuid);
-            ps.setString(2, today);
-            ResultSet rs = ps.executeQuery();
-
-            PlayerData data = null;
-            if (rs.next()) {
-                data = new PlayerData();
-                data.setMinecraftUuid(minecraftUuid);
-                data.setMinecraftName(rs.getString("minecraft_name"));
-                data.setKills(rs.getInt("kills"));
-                data.setDeaths(rs.getInt("deaths"));
-                data.setDistanceTraveled(rs.getDouble("distance_traveled"));
-                data.setDailyDistance(rs.getDouble("daily_distance"));
-                data.setPlayTimeMinutes(rs.getInt("play_time_minutes"));
-                data.setAchievementsCount(rs.getInt("achievements_count"));
-                data.setLastX(rs.getDouble("last_x"));
-                data.setLastY(rs.getDouble("last_y"));
-                data.setLastZ(rs.getDouble("last_z"));
-            }
-
-            rs.close();
-            ps.close();
+            ps.setLong(1, epochDay);
+            ps.setBytes(2, uuidBytes(minecraftUuid));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return readStatsRow(rs, minecraftUuid.toString());
+                }
+            }
+
+            // 初めて参加したプレイヤーはすべて0として扱う
+            PlayerData data = new PlayerData();
+            data.setMinecraftUuid(minecraftUuid.toString());
             return data;
-        } catch (SQLException e) {
-            logger.severe("プレイヤー統計取得中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
-    // ランキング取得（キル数、移動距離、実績）
-    public List<PlayerData> getTopPlayers(String type, String period) {
-        List<PlayerData> playerDataList = new ArrayList<>();
+    // players と player_stats を結合した1行を PlayerData に変換する（統計の行が無ければ0になる）
+    private PlayerData readStatsRow(ResultSet rs, String minecraftUuid) throws SQLException {
+        PlayerData data = new PlayerData();
+        data.setMinecraftUuid(minecraftUuid);
+        data.setMinecraftName(rs.getString("minecraft_name"));
+        data.setKills(rs.getInt("kills"));
+        data.setDeaths(rs.getInt("deaths"));
+        data.setDistanceTraveled(rs.getDouble("distance_traveled"));
+        data.setDailyDistance(rs.getDouble("daily_distance"));
+        data.setPlayTimeMinutes(rs.getInt("play_time_minutes"));
+        data.setAchievementsCount(rs.getInt("achievements_count"));
+        data.setLastX(rs.getDouble("last_x"));
+        data.setLastY(rs.getDouble("last_y"));
+        data.setLastZ(rs.getDouble("last_z"));
+        data.setKillsByType(killTypes.decode(rs.getBytes("kills_by_type")));
+        return data;
+    }
 
-        try {
-            // 期間の日付範囲を計算
-            LocalDate today = LocalDate.now();
-            LocalDate startDate;
-
-            if ("weekly".equalsIgnoreCase(period)) {
-                startDate = today.minusDays(7);
-            } else if ("monthly".equalsIgnoreCase(period)) {
-                startDate = today.minusMonths(1);
-            } else {
-                return playerDataList; // 無効な期間
-            }
-
-            String startDateStr = startDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
-            String endDateStr = today.format(DateTimeFormatter.ISO_LOCAL_DATE);
-
-            // クエリを作成
-            String statColumn;
-            switch (type.toLowerCase()) {
-                case "kill":
-                    statColumn = "SUM(ps.kills)";
-                    break;
-                case "distance":
-                    statColumn = "SUM(ps.distance_traveled)";
-                    break;
-                case "achievements":
-                    statColumn = "SUM(ps.achievements_count)";
-                    break;
-                default:
-                    return playerDataList; // 無効なタイプ
-            }
-
-            String query = "SELECT p.minecraft_name, p.minecraft_uuid, " + statColumn + " as total " +
-                    "FROM players p " +
-                    "JOIN player_stats ps ON p.minecraft_uuid = ps.minecraft_uuid " +
-                    "WHERE ps.date BETWEEN ? AND ? " +
-                    "GROUP BY p.minecraft_uuid " +
-                    "ORDER BY total DESC " +
-                    "LIMIT 10";
-
-            PreparedStatement ps = connection.prepareStatement(query);
-            ps.setString(1, startDateStr);
-            ps.setString(2, endDateStr);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                PlayerData data = new PlayerData();
-                data.setMinecraftUuid(rs.getString("minecraft_uuid"));
-                data.setMinecraftName(rs.getString("minecraft_name"));
-
-                // 統計値を設定
-                double total = rs.getDouble("total");
-                switch (type.toLowerCase()) {
-                    case "kill":
-                        data.setKills((int) total);
-                        break;
-                    case "distance":
-                        data.setDistanceTraveled(total);
-                        break;
-                    case "achievements":
-                        data.setAchievementsCount((int) total);
-                        break;
+    /**
+     * 登録済みプレイヤーの名前とランキング集計を期間ごとに読み込み、書き込みスレッド上でそのままconsumerに渡す
+     * （書き込みと同じスレッドで渡すことで、フラッシュの反映と読み込みの順序が入れ替わらない）
+     */
+    public CompletableFuture<Void> loadLeaderboardRollups(BiConsumer<Map<String, String>, Map<String, List<PlayerData>>> consumer) {
+        return submit("ランキング集計の読み込み中にエラーが発生しました: ", null, () -> {
+            Map<String, List<PlayerData>> rollupsByPeriod = new HashMap<>();
+
+            PreparedStatement ps = statement(
+                    "SELECT r.period, p.uuid, p.minecraft_name, r.kills, r.distance_traveled, r.achievements_count " +
+                            "FROM stat_rollups r JOIN players p ON p.player_id = r.player_id " +
+                            "WHERE p.discord_id IS NOT NULL"
+            );
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    PlayerData data = new PlayerData();
+                    data.setMinecraftUuid(uuidFromBytes(rs.getBytes("uuid")).toString());
+                    data.setMinecraftName(rs.getString("minecraft_name"));
+                    data.setKills(rs.getInt("kills"));
+                    data.setDistanceTraveled(rs.getDouble("distance_traveled"));
+                    data.setAchievementsCount(rs.getInt("achievements_count"));
+                    rollupsByPeriod.computeIfAbsent(rs.getString("period"), period -> new ArrayList<>()).add(data);
                 }
+            }
 
-                playerDataList.add(data);
+            // 集計にまだ値がない登録済みプレイヤーも含めた名前一覧
+            Map<String, String> playerNames = new HashMap<>();
+            PreparedStatement players = statement("SELECT uuid, minecraft_name FROM players WHERE discord_id IS NOT NULL");
+            try (ResultSet rs = players.executeQuery()) {
+                while (rs.next()) {
+                    playerNames.put(uuidFromBytes(rs.getBytes("uuid")).toString(), rs.getString("minecraft_name"));
+                }
             }
 
-            rs.close();
-            ps.close();
-        } catch (SQLException e) {
-            logger.severe("ランキング取得中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+            consumer.accept(playerNames, rollupsByPeriod);
+            return null;
+        });
+    }
+
+    // ランキング取得（キル数、移動距離、実績）
+    public CompletableFuture<List<PlayerData>> getTopPlayers(String type, String period) {
+        // 無効な期間・タイプ
+        String statColumn = LeaderboardRollups.column(type);
+        if (LeaderboardRollups.windowStart(period, LocalDate.now()) == null || statColumn == null) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
 
-        return playerDataList;
+        // 集計済みテーブルからインデックス順に上位10件を読む
+        String query = "SELECT p.minecraft_name, p.uuid, r." + statColumn + " AS total " +
+                "FROM stat_rollups r " +
+                "JOIN players p ON p.player_id = r.player_id " +
+                "WHERE r.period = ? AND p.discord_id IS NOT NULL " +
+                "ORDER BY r." + statColumn + " DESC " +
+                "LIMIT 10";
+
+        return read("ランキング取得中にエラーが発生しました: ", new ArrayList<>(), db -> {
+            List<PlayerData> playerDataList = new ArrayList<>();
+
+            PreparedStatement ps = db.statement(query);
+            ps.setString(1, period.toLowerCase());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    PlayerData data = new PlayerData();
+                    data.setMinecraftUuid(uuidFromBytes(rs.getBytes("uuid")).toString());
+                    data.setMinecraftName(rs.getString("minecraft_name"));
+
+                    setRankingValue(data, type, rs.getDouble("total"));
+                    playerDataList.add(data);
+                }
+            }
+
+            return playerDataList;
+        });
     }
 
-    // 全プレイヤーの統計を取得
-    public List<PlayerData> getAllPlayersStats() {
-        List<PlayerData> playerDataList = new ArrayList<>();
+    /**
+     * 任意の期間 [from, to] のランキングを取得する（from が null の場合は全期間）
+     *
+     * 累積統計の2回の検索で各プレイヤーの合計を求めるため、期間の長さに関係なく一定の手間で済む。
+     */
+    public CompletableFuture<List<PlayerData>> getTopPlayersInRange(String type, LocalDate from, LocalDate to) {
+        String cumColumn = CumulativeStats.column(type);
+        if (cumColumn == null || to == null || (from != null && from.isAfter(to))) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
 
-        try {
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String query = CumulativeStats.rangeTopQuery(cumColumn, 10);
+        long toDay = to.toEpochDay();
+        long fromDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
 
-            PreparedStatement ps = connection.prepareStatement(
-                    "SELECT p.minecraft_name, ps.* FROM players p " +
-                            "JOIN player_stats ps ON p.minecraft_uuid = ps.minecraft_uuid " +
-                            "WHERE ps.date = ?"
-            );
-            ps.setString(1, today);
-            ResultSet rs = ps.executeQuery();
+        return read("期間指定ランキング取得中にエラーが発生しました: ", new ArrayList<>(), db -> {
+            List<PlayerData> playerDataList = new ArrayList<>();
 
-            while (rs.next()) {
-                PlayerData data = new PlayerData();
-                data.setMinecraftUuid(rs.getString("minecraft_uuid"));
-                data.setMinecraftName(rs.getString("minecraft_name"));
-                data.setKills(rs.getInt("kills"));
-                data.setDeaths(rs.getInt("deaths"));
-                data.setDistanceTraveled(rs.getDouble("distance_traveled"));
-                data.setDailyDistance(rs.getDouble("daily_distance"));
-                data.setPlayTimeMinutes(rs.getInt("play_time_minutes"));
-                data.setAchievementsCount(rs.getInt("achievements_count"));
+            PreparedStatement ps = db.statement(query);
+            ps.setLong(1, toDay);
+            ps.setLong(2, fromDay);
 
-                playerDataList.add(data);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    PlayerData data = new PlayerData();
+                    data.setMinecraftUuid(uuidFromBytes(rs.getBytes("uuid")).toString());
+                    data.setMinecraftName(rs.getString("minecraft_name"));
+                    setRankingValue(data, type, rs.getDouble("total"));
+                    playerDataList.add(data);
+                }
             }
 
-            rs.close();
-            ps.close();
-        } catch (SQLException e) {
-            logger.severe("全プレイヤー統計取得中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+            return playerDataList;
+        });
+    }
+
+    /**
+     * 指定した種類のモブのキル数ランキングを取得（from が null の場合は全期間）
+     *
+     * 期間指定ランキングと同じく累積キル数の2回の検索で求めるため、期間の長さに関係なく一定の手間で済む。
+     */
+    public CompletableFuture<List<PlayerData>> getTopPlayersByMob(EntityType type, LocalDate from, LocalDate to) {
+        if (type == null || to == null || (from != null && from.isAfter(to))) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
 
-        return playerDataList;
+        String query = KillTypeCumulative.rangeTopQuery(10);
+        long toDay = to.toEpochDay();
+        long fromDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
+
+        return read("モブ別ランキング取得中にエラーが発生しました: ", new ArrayList<>(), db -> {
+            List<PlayerData> playerDataList = new ArrayList<>();
+
+            PreparedStatement ps = db.statement(query);
+            ps.setLong(1, toDay);
+            ps.setLong(2, fromDay);
+            ps.setString(3, type.name());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    PlayerData data = new PlayerData();
+                    data.setMinecraftUuid(uuidFromBytes(rs.getBytes("uuid")).toString());
+                    data.setMinecraftName(rs.getString("minecraft_name"));
+                    data.setKills(rs.getInt("total"));
+                    playerDataList.add(data);
+                }
+            }
+
+            return playerDataList;
+        });
     }
 
-    // 日次統計をリセット
-    public void resetDailyStats() {
-        try {
-            String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+    // 週間・月間ランキングの集計期間の開始日
+    public static LocalDate periodStart(String period) {
+        return LeaderboardRollups.windowStart(period, LocalDate.now());
+    }
+
+    // ランキングの統計値を設定
+    private static void setRankingValue(PlayerData data, String type, double total) {
+        switch (type.toLowerCase()) {
+            case "kill":
+                data.setKills((int) total);
+                break;
+            case "distance":
+                data.setDistanceTraveled(total);
+                break;
+            case "achievements":
+                data.setAchievementsCount((int) total);
+                break;
+        }
+    }
+
+    // 全プレイヤーの統計を取得
+    public CompletableFuture<List<PlayerData>> getAllPlayersStats() {
+        return read("全プレイヤー統計取得中にエラーが発生しました: ", new ArrayList<>(), db -> {
+            List<PlayerData> playerDataList = new ArrayList<>();
+
+            PreparedStatement ps = db.statement(
+                    "SELECT p.uuid, p.minecraft_name, ps.* FROM players p " +
+                            "JOIN player_stats ps ON ps.player_id = p.player_id " +
+                            "WHERE ps.epoch_day = ? AND p.discord_id IS NOT NULL"
+            );
+            ps.setLong(1, today());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    PlayerData data = new PlayerData();
+                    data.setMinecraftUuid(uuidFromBytes(rs.getBytes("uuid")).toString());
+                    data.setMinecraftName(rs.getString("minecraft_name"));
+                    data.setKills(rs.getInt("kills"));
+                    data.setDeaths(rs.getInt("deaths"));
+                    data.setDistanceTraveled(rs.getDouble("distance_traveled"));
+                    data.setDailyDistance(rs.getDouble("daily_distance"));
+                    data.setPlayTimeMinutes(rs.getInt("play_time_minutes"));
+                    data.setAchievementsCount(rs.getInt("achievements_count"));
+
+                    playerDataList.add(data);
+                }
+            }
+
+            return playerDataList;
+        });
+    }
 
-            PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE player_stats SET daily_distance = 0 WHERE date = ?"
+    // 日次統計をリセット
+    public CompletableFuture<Void> resetDailyStats() {
+        return submit("日次統計リセット中にエラーが発生しました: ", null, () -> {
+            PreparedStatement ps = statement(
+                    "UPDATE player_stats SET daily_distance = 0 WHERE epoch_day = ?"
             );
-            ps.setString(1, today);
+            ps.setLong(1, today());
             ps.executeUpdate();
-            ps.close();
 
+            playerStatsCache.invalidateAll();
             logger.info("日次統計がリセットされました。");
-        } catch (SQLException e) {
-            logger.severe("日次統計リセット中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-        }
+            return null;
+        });
+    }
+
+    public AdvancementRarity getAdvancementRarity() {
+        return advancementRarity;
+    }
+
+    public LookupCache<String, String> getDiscordIdCache() {
+        return discordIdCache;
+    }
+
+    public LookupCache<String, PlayerData> getPlayerStatsCache() {
+        return playerStatsCache;
     }
-}
\ No newline at end of file
+}
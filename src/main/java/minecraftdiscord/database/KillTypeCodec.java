@@ -0,0 +1,161 @@
+package minecraftdiscord.database;
+
+import org.sqlite.Function;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * モブの種類ごとのキル数を player_stats.kills_by_type に保存する形式との変換
+ *
+ * 形式は (種類ID, キル数) の可変長整数の組を種類IDの昇順に並べたもので、キルの無い種類は含まない。
+ * 種類IDは entity_types テーブルで割り当てる（{@link KillTypeDictionary}）。
+ */
+final class KillTypeCodec {
+
+    private KillTypeCodec() {
+    }
+
+    // 種類IDを添字にしたキル数の配列を保存形式にする（すべて0の場合はnull）
+    static byte[] encode(int[] countsById) {
+        if (countsById == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int id = 0; id < countsById.length; id++) {
+            if (countsById[id] > 0) {
+                writeVarInt(out, id);
+                writeVarInt(out, countsById[id]);
+            }
+        }
+        return out.size() == 0 ? null : out.toByteArray();
+    }
+
+    // 保存形式を種類IDを添字にしたキル数の配列にする
+    static int[] decode(byte[] blob) {
+        if (blob == null || blob.length == 0) {
+            return new int[0];
+        }
+
+        int[] counts = new int[16];
+        int[] position = {0};
+        while (position[0] < blob.length) {
+            int id = readVarInt(blob, position);
+            int count = readVarInt(blob, position);
+            if (id >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+            }
+            counts[id] += count;
+        }
+        return counts;
+    }
+
+    // 指定した種類のキル数だけを読む（配列を作らない）
+    static int count(byte[] blob, int typeId) {
+        if (blob == null) {
+            return 0;
+        }
+
+        int[] position = {0};
+        while (position[0] < blob.length) {
+            int id = readVarInt(blob, position);
+            int count = readVarInt(blob, position);
+            if (id == typeId) {
+                return count;
+            }
+            if (id > typeId) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    static byte[] add(byte[] a, byte[] b) {
+        if (a == null || a.length == 0) {
+            return b;
+        }
+        if (b == null || b.length == 0) {
+            return a;
+        }
+
+        int[] left = decode(a);
+        int[] right = decode(b);
+        int[] sum = Arrays.copyOf(left, Math.max(left.length, right.length));
+        for (int id = 0; id < right.length; id++) {
+            sum[id] += right[id];
+        }
+        return encode(sum);
+    }
+
+    /**
+     * SQLから使う関数を接続に登録する（書き込み・読み取りのすべての接続で呼ぶ）
+     *
+     * kill_type_count(blob, type_id): 指定した種類のキル数
+     * kill_types_add(blob, blob): 2つのキル数を足したもの
+     * kill_types_sum(blob): 集約関数。グループ内のキル数の合計
+     */
+    static void registerFunctions(Connection connection) throws SQLException {
+        Function.create(connection, "kill_type_count", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(count(value_blob(0), value_int(1)));
+            }
+        }, 2, Function.FLAG_DETERMINISTIC);
+
+        Function.create(connection, "kill_types_add", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                byte[] sum = add(value_blob(0), value_blob(1));
+                if (sum == null) {
+                    result();
+                } else {
+                    result(sum);
+                }
+            }
+        }, 2, Function.FLAG_DETERMINISTIC);
+
+        Function.create(connection, "kill_types_sum", new SumAggregate(), 1, Function.FLAG_DETERMINISTIC);
+    }
+
+    // グループごとに複製されて使われる
+    private static final class SumAggregate extends Function.Aggregate {
+        private byte[] sum;
+
+        @Override
+        protected void xStep() throws SQLException {
+            sum = add(sum, value_blob(0));
+        }
+
+        @Override
+        protected void xFinal() throws SQLException {
+            if (sum == null) {
+                result();
+            } else {
+                result(sum);
+            }
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] blob, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = blob[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
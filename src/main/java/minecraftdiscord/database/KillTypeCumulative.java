@@ -0,0 +1,71 @@
+package minecraftdiscord.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * プレイヤーごと・モブの種類ごとの累積キル数（kill_type_cumulative）を管理する
+ *
+ * {@link CumulativeStats} と同じく各行はその日までの合計値を持ち、期間 [from, to] のキル数は
+ * 種類・プレイヤーごとの2回の主キー検索で求める。キル数が変化した日にだけ行を作る。
+ * 書き込みスレッドからのみ呼び出し、トランザクションは呼び出し側で管理する。
+ */
+class KillTypeCumulative {
+
+    private final StatementSource db;
+
+    KillTypeCumulative(StatementSource db) {
+        this.db = db;
+    }
+
+    // 指定日のモブの種類ごとのキル数（種類IDが添字）を累積値に加算する
+    void addDelta(int playerId, long epochDay, int[] countsById) throws SQLException {
+        PreparedStatement seed = null;
+        PreparedStatement add = null;
+
+        for (int typeId = 0; typeId < countsById.length; typeId++) {
+            if (countsById[typeId] <= 0) {
+                continue;
+            }
+
+            if (seed == null) {
+                // その日の行がなければ直前の累積値で作成する
+                seed = db.statement(
+                        "INSERT OR IGNORE INTO kill_type_cumulative (type_id, player_id, epoch_day, cum_kills) " +
+                                "SELECT ?, ?, ?, IFNULL((SELECT cum_kills FROM kill_type_cumulative " +
+                                "WHERE type_id = ? AND player_id = ? AND epoch_day < ? " +
+                                "ORDER BY epoch_day DESC LIMIT 1), 0)");
+                // 時計が戻った場合に備えて、その日以降のすべての行に加算する
+                add = db.statement(
+                        "UPDATE kill_type_cumulative SET cum_kills = cum_kills + ? " +
+                                "WHERE type_id = ? AND player_id = ? AND epoch_day >= ?");
+            }
+
+            seed.setInt(1, typeId);
+            seed.setInt(2, playerId);
+            seed.setLong(3, epochDay);
+            seed.setInt(4, typeId);
+            seed.setInt(5, playerId);
+            seed.setLong(6, epochDay);
+            seed.executeUpdate();
+
+            add.setInt(1, countsById[typeId]);
+            add.setInt(2, typeId);
+            add.setInt(3, playerId);
+            add.setLong(4, epochDay);
+            add.executeUpdate();
+        }
+    }
+
+    // 登録済みプレイヤーの指定したモブの期間 [from, to] のキル数で上位を返すクエリ
+    // （パラメータはエポック日の to, from とモブの種類名の順）
+    static String rangeTopQuery(int limit) {
+        String latest = "(SELECT c.cum_kills FROM kill_type_cumulative c " +
+                "WHERE c.type_id = t.type_id AND c.player_id = p.player_id AND c.epoch_day %s ? " +
+                "ORDER BY c.epoch_day DESC LIMIT 1)";
+        return "SELECT p.uuid, p.minecraft_name, " +
+                "IFNULL(" + String.format(latest, "<=") + ", 0) - IFNULL(" + String.format(latest, "<") + ", 0) AS total " +
+                "FROM entity_types t JOIN players p ON p.discord_id IS NOT NULL " +
+                "WHERE t.name = ? AND total > 0 ORDER BY total DESC LIMIT " + limit;
+    }
+}
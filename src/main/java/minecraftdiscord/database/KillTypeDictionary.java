@@ -0,0 +1,133 @@
+package minecraftdiscord.database;
+
+import org.bukkit.entity.EntityType;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * EntityType と entity_types テーブルの種類IDの対応
+ *
+ * IDの割り当ては書き込みスレッドからのみ行う。IDから種類への変換は任意のスレッドから呼べる
+ * （コミット済みの行に含まれるIDは、割り当て時点でこの対応に追加されている）。
+ */
+final class KillTypeDictionary {
+
+    private static final EntityType[] TYPES = EntityType.values();
+
+    private final StatementSource db;
+
+    // EntityType.ordinal() → 種類ID（0は未割り当て。書き込みスレッド専用）
+    private final int[] idByOrdinal = new int[TYPES.length];
+
+    // 種類ID → EntityType（追加時は配列ごと差し替える）
+    private volatile EntityType[] typeById = new EntityType[1];
+
+    KillTypeDictionary(StatementSource db) {
+        this.db = db;
+    }
+
+    // 割り当て済みのIDを読み込む（現在のサーバーに存在しない種類は読み飛ばす）
+    void load() throws SQLException {
+        EntityType[] types = new EntityType[1];
+        PreparedStatement ps = db.statement("SELECT type_id, name FROM entity_types");
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("type_id");
+                EntityType type = parse(rs.getString("name"));
+                if (id >= types.length) {
+                    types = Arrays.copyOf(types, id + 1);
+                }
+                types[id] = type;
+                if (type != null) {
+                    idByOrdinal[type.ordinal()] = id;
+                }
+            }
+        }
+        typeById = types;
+    }
+
+    // 種類IDを返す（未割り当ての場合は新しく割り当てる）
+    int idFor(EntityType type) throws SQLException {
+        int id = idByOrdinal[type.ordinal()];
+        if (id != 0) {
+            return id;
+        }
+
+        PreparedStatement insert = db.statement("INSERT OR IGNORE INTO entity_types (name) VALUES (?)");
+        insert.setString(1, type.name());
+        insert.executeUpdate();
+
+        PreparedStatement select = db.statement("SELECT type_id FROM entity_types WHERE name = ?");
+        select.setString(1, type.name());
+        try (ResultSet rs = select.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("モブの種類IDを取得できませんでした: " + type);
+            }
+            id = rs.getInt(1);
+        }
+
+        EntityType[] types = typeById;
+        if (id >= types.length) {
+            types = Arrays.copyOf(types, id + 1);
+        } else {
+            types = types.clone();
+        }
+        types[id] = type;
+        typeById = types;
+        idByOrdinal[type.ordinal()] = id;
+        return id;
+    }
+
+    // ロールバックで取り消されたIDを使わないように読み込み直す
+    void reload() throws SQLException {
+        Arrays.fill(idByOrdinal, 0);
+        load();
+    }
+
+    /**
+     * EntityType.ordinal() を添字にしたキル数を保存形式にする（書き込みスレッド専用）
+     */
+    byte[] encode(int[] countsByOrdinal) throws SQLException {
+        if (countsByOrdinal == null) {
+            return null;
+        }
+
+        int[] countsById = new int[typeById.length];
+        for (int ordinal = 0; ordinal < countsByOrdinal.length; ordinal++) {
+            if (countsByOrdinal[ordinal] > 0) {
+                int id = idFor(TYPES[ordinal]);
+                if (id >= countsById.length) {
+                    countsById = Arrays.copyOf(countsById, id + 1);
+                }
+                countsById[id] += countsByOrdinal[ordinal];
+            }
+        }
+        return KillTypeCodec.encode(countsById);
+    }
+
+    // 保存形式を種類ごとのキル数にする
+    Map<EntityType, Integer> decode(byte[] blob) {
+        Map<EntityType, Integer> counts = new EnumMap<>(EntityType.class);
+        int[] countsById = KillTypeCodec.decode(blob);
+        EntityType[] types = typeById;
+        for (int id = 0; id < countsById.length; id++) {
+            if (countsById[id] > 0 && id < types.length && types[id] != null) {
+                counts.merge(types[id], countsById[id], Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static EntityType parse(String name) {
+        try {
+            return EntityType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package minecraftdiscord.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * 週間・月間ランキング用の集計テーブル（stat_rollups）を差分で更新する
+ *
+ * 書き込みスレッドからのみ呼び出し、トランザクションは呼び出し側で管理する。
+ */
+class LeaderboardRollups {
+
+    static final String[] PERIODS = {"weekly", "monthly"};
+
+    private final StatementSource db;
+
+    // 集計期間を最後に合わせた日付（書き込みスレッド専用）
+    private LocalDate rolledDay;
+
+    LeaderboardRollups(StatementSource db) {
+        this.db = db;
+    }
+
+    // 期間の開始日（終了日は当日を含む）
+    static LocalDate windowStart(String period, LocalDate today) {
+        if ("weekly".equalsIgnoreCase(period)) {
+            return today.minusDays(7);
+        } else if ("monthly".equalsIgnoreCase(period)) {
+            return today.minusMonths(1);
+        }
+        return null;
+    }
+
+    // ランキングタイプに対応する集計列
+    static String column(String type) {
+        switch (type.toLowerCase()) {
+            case "kill":
+                return "kills";
+            case "distance":
+                return "distance_traveled";
+            case "achievements":
+                return "achievements_count";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 日付が変わっていれば、期間外になった日の値を差し引いて集計期間を今日に合わせる
+     *
+     * @return 集計期間を進めた（または作り直した）場合は true
+     */
+    boolean ensureWindows(LocalDate today) throws SQLException {
+        if (today.equals(rolledDay)) {
+            return false;
+        }
+
+        boolean rolled = false;
+        for (String period : PERIODS) {
+            rolled |= rollWindow(period, today);
+        }
+        rolledDay = today;
+        return rolled;
+    }
+
+    // 集計期間が day より前の日に合わせられている場合は true
+    boolean isBehind(long day) {
+        return rolledDay != null && day > rolledDay.toEpochDay();
+    }
+
+    // ロールバックで取り消された場合に、次回の ensureWindows で期間を合わせ直す
+    void forgetRolledDay() {
+        rolledDay = null;
+    }
+
+    private boolean rollWindow(String period, LocalDate today) throws SQLException {
+        long newStart = windowStart(period, today).toEpochDay();
+        long newEnd = today.toEpochDay();
+
+        boolean found = false;
+        long oldStart = 0;
+        long oldEnd = 0;
+        PreparedStatement select = db.statement("SELECT start_day, end_day FROM stat_rollup_windows WHERE period = ?");
+        select.setString(1, period);
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) {
+                found = true;
+                oldStart = rs.getLong("start_day");
+                oldEnd = rs.getLong("end_day");
+            }
+        }
+
+        if (found && newEnd == oldEnd && newStart == oldStart) {
+            return false;
+        }
+
+        if (!found || oldStart > newStart || oldEnd > newEnd) {
+            // 初回や時計が戻った場合は player_stats から作り直す
+            rebuild(period, newStart, newEnd);
+        } else {
+            // 期間から外れた日 [oldStart, newStart) の値を差し引く
+            PreparedStatement subtract = db.statement(
+                    "UPDATE stat_rollups SET kills = stat_rollups.kills - d.kills, " +
+                            "distance_traveled = stat_rollups.distance_traveled - d.distance_traveled, " +
+                            "achievements_count = stat_rollups.achievements_count - d.achievements_count " +
+                            "FROM (SELECT player_id, SUM(kills) AS kills, SUM(distance_traveled) AS distance_traveled, " +
+                            "SUM(achievements_count) AS achievements_count FROM player_stats " +
+                            "WHERE epoch_day >= ? AND epoch_day < ? GROUP BY player_id) d " +
+                            "WHERE stat_rollups.period = ? AND stat_rollups.player_id = d.player_id");
+            subtract.setLong(1, oldStart);
+            subtract.setLong(2, newStart);
+            subtract.setString(3, period);
+            subtract.executeUpdate();
+
+            // 値が残っていないプレイヤーは削除（移動距離は浮動小数点の誤差を許容）
+            PreparedStatement prune = db.statement(
+                    "DELETE FROM stat_rollups WHERE period = ? AND kills <= 0 AND achievements_count <= 0 " +
+                            "AND distance_traveled < 0.000001");
+            prune.setString(1, period);
+            prune.executeUpdate();
+        }
+
+        PreparedStatement save = db.statement(
+                "INSERT OR REPLACE INTO stat_rollup_windows (period, start_day, end_day) VALUES (?, ?, ?)");
+        save.setString(1, period);
+        save.setLong(2, newStart);
+        save.setLong(3, newEnd);
+        save.executeUpdate();
+        return true;
+    }
+
+    private void rebuild(String period, long startDay, long endDay) throws SQLException {
+        PreparedStatement clear = db.statement("DELETE FROM stat_rollups WHERE period = ?");
+        clear.setString(1, period);
+        clear.executeUpdate();
+
+        PreparedStatement fill = db.statement(
+                "INSERT INTO stat_rollups (period, player_id, kills, distance_traveled, achievements_count) " +
+                        "SELECT ?, player_id, SUM(kills), SUM(distance_traveled), SUM(achievements_count) " +
+                        "FROM player_stats WHERE epoch_day BETWEEN ? AND ? GROUP BY player_id");
+        fill.setString(1, period);
+        fill.setLong(2, startDay);
+        fill.setLong(3, endDay);
+        fill.executeUpdate();
+    }
+
+    // epochDay の統計差分を、その日を含む期間の集計に加算する
+    void addDelta(int playerId, long epochDay, int kills, double distance, int achievements) throws SQLException {
+        if (kills == 0 && distance == 0 && achievements == 0) {
+            return;
+        }
+
+        PreparedStatement upsert = db.statement(
+                "INSERT INTO stat_rollups (period, player_id, kills, distance_traveled, achievements_count) " +
+                        "VALUES (?, ?, ?, ?, ?) ON CONFLICT (period, player_id) DO UPDATE SET " +
+                        "kills = kills + excluded.kills, " +
+                        "distance_traveled = distance_traveled + excluded.distance_traveled, " +
+                        "achievements_count = achievements_count + excluded.achievements_count");
+        boolean added = false;
+        for (String period : PERIODS) {
+            // 既に期間から外れた日の差分は加えない
+            if (rolledDay != null && epochDay < windowStart(period, rolledDay).toEpochDay()) {
+                continue;
+            }
+            added = true;
+            upsert.setString(1, period);
+            upsert.setInt(2, playerId);
+            upsert.setInt(3, kills);
+            upsert.setDouble(4, distance);
+            upsert.setInt(5, achievements);
+            upsert.addBatch();
+        }
+        if (added) {
+            upsert.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package minecraftdiscord.database;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * オンライン中のプレイヤーの今日の統計を、参加時に読み込んだ値とその後の差分としてメモリ上に保持する
+ *
+ * 差分の更新はメインスレッドとデータベーススレッドから、読み取りは任意のスレッド（JDAなど）から行える。
+ */
+public final class LiveStats {
+
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
+
+    private static final class Entry {
+        private final long epochDay;
+        // プレイ時間はこの時刻からの経過分を加算する（参加時刻か、日付が変わった時刻）
+        private final long sinceMillis;
+        private final String playerName;
+
+        // 参加時点でデータベースに書き込まれていた値（書き込みスレッドで読み込む）
+        private final CompletableFuture<PlayerData> base;
+
+        // 読み込みの後に発生した差分
+        private final AtomicInteger kills = new AtomicInteger();
+        private final AtomicIntegerArray killsByType = new AtomicIntegerArray(ENTITY_TYPES.length);
+        private final AtomicInteger deaths = new AtomicInteger();
+        private final AtomicInteger achievements = new AtomicInteger();
+        private final DoubleAdder distance = new DoubleAdder();
+
+        private Entry(long epochDay, long sinceMillis, String playerName, CompletableFuture<PlayerData> base) {
+            this.epochDay = epochDay;
+            this.sinceMillis = sinceMillis;
+            this.playerName = playerName;
+            this.base = base;
+        }
+    }
+
+    private final MinecraftDiscordPlugin plugin;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    public LiveStats(MinecraftDiscordPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 参加したプレイヤーの今日の統計を読み込む（メインスレッドから呼ぶ）
+     *
+     * 読み込みは書き込みスレッドに登録するため、これより前に登録された書き込みの分だけが含まれ、
+     * 以降にバッファから書き込まれる差分と二重に数えることはない。
+     */
+    public void join(Player player) {
+        long now = System.currentTimeMillis();
+        entries.put(player.getUniqueId(), load(player.getUniqueId(), player.getName(), LocalDate.now(zoneId), now));
+    }
+
+    public void quit(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    // 日付が変わっていれば、新しい日の統計を読み込み直す（メインスレッドから、バッファの書き込みを登録した後に呼ぶ）
+    public void rollDay() {
+        LocalDate today = LocalDate.now(zoneId);
+        long midnight = today.atStartOfDay(zoneId).toInstant().toEpochMilli();
+        for (Map.Entry<UUID, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.epochDay != today.toEpochDay()) {
+                e.setValue(load(e.getKey(), entry.playerName, today, Math.max(entry.sinceMillis, midnight)));
+            }
+        }
+    }
+
+    public void addKill(UUID uuid, EntityType type) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.kills.incrementAndGet();
+            entry.killsByType.incrementAndGet(type.ordinal());
+        }
+    }
+
+    public void addDeath(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.deaths.incrementAndGet();
+        }
+    }
+
+    // 移動距離はメインスレッドの集計から統計バッファに移した時点で加算する
+    public void addDistance(UUID uuid, double distance) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.distance.add(distance);
+        }
+    }
+
+    /**
+     * 書き込み完了時のリスナー（書き込みスレッドで呼ばれる）
+     *
+     * 実績は書き込み時に初めて新規かどうかが分かるため、ここで加算する。
+     * 読み込みがまだ終わっていないプレイヤーの分は読み込み結果に含まれるので加算しない。
+     */
+    public void applyFlushed(Collection<StatDelta> deltas) {
+        for (StatDelta delta : deltas) {
+            Entry entry = entries.get(delta.getPlayerUuid());
+            // 前日の分は今日の値に含めない
+            if (entry != null && entry.base.isDone() && delta.getEpochDay() == entry.epochDay
+                    && delta.getNewAchievements() > 0) {
+                entry.achievements.addAndGet(delta.getNewAchievements());
+            }
+        }
+    }
+
+    /**
+     * 今日の統計を返す。オンライン中のプレイヤーはデータベースに触れずにメモリ上の値から作り、
+     * オフラインのプレイヤーはデータベースから読み込む。
+     */
+    public CompletableFuture<PlayerData> getStats(String minecraftUuid) {
+        Entry entry = entries.get(UUID.fromString(minecraftUuid));
+        if (entry == null) {
+            return plugin.getDatabaseManager().getPlayerStats(minecraftUuid);
+        }
+
+        return entry.base.thenCompose(base -> {
+            // 読み込みに失敗した場合はデータベースから読み直す
+            if (base == null) {
+                return plugin.getDatabaseManager().getPlayerStats(minecraftUuid);
+            }
+            return CompletableFuture.completedFuture(merge(entry, base));
+        });
+    }
+
+    private PlayerData merge(Entry entry, PlayerData base) {
+        double distance = entry.distance.sum();
+        long playedMinutes = Math.max(0, (System.currentTimeMillis() - entry.sinceMillis) / MINUTE_MILLIS);
+
+        PlayerData data = new PlayerData();
+        data.setMinecraftUuid(base.getMinecraftUuid());
+        data.setMinecraftName(base.getMinecraftName() != null ? base.getMinecraftName() : entry.playerName);
+        data.setKills(base.getKills() + entry.kills.get());
+        data.setDeaths(base.getDeaths() + entry.deaths.get());
+        data.setDistanceTraveled(base.getDistanceTraveled() + distance);
+        data.setDailyDistance(base.getDailyDistance() + distance);
+        data.setPlayTimeMinutes(base.getPlayTimeMinutes() + (int) playedMinutes);
+        data.setAchievementsCount(base.getAchievementsCount() + entry.achievements.get());
+        data.setLastX(base.getLastX());
+        data.setLastY(base.getLastY());
+        data.setLastZ(base.getLastZ());
+
+        Map<EntityType, Integer> killsByType = new EnumMap<>(EntityType.class);
+        killsByType.putAll(base.getKillsByType());
+        for (int ordinal = 0; ordinal < ENTITY_TYPES.length; ordinal++) {
+            int count = entry.killsByType.get(ordinal);
+            if (count > 0) {
+                killsByType.merge(ENTITY_TYPES[ordinal], count, Integer::sum);
+            }
+        }
+        data.setKillsByType(killsByType);
+        return data;
+    }
+
+    private Entry load(UUID uuid, String playerName, LocalDate day, long sinceMillis) {
+        CompletableFuture<PlayerData> base = plugin.getDatabaseManager().loadDayStats(uuid, day.toEpochDay());
+        return new Entry(day.toEpochDay(), sinceMillis, playerName, base);
+    }
+}
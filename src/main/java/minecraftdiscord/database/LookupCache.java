@@ -0,0 +1,104 @@
+package minecraftdiscord.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 件数と有効期限で上限を設けた読み取りキャッシュ（任意のスレッドから呼べる）
+ *
+ * 読み込み中に無効化が行われた場合は、古い読み込み結果を格納しない。
+ */
+public final class LookupCache<K, V> {
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // アクセス順に並べ、上限を超えたら最も古く使われたものを捨てる
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    // 無効化のたびに進める（読み込み開始時の値と比べて、古い結果の格納を防ぐ）
+    private long generation;
+
+    public LookupCache(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = Math.max(0, ttlMillis) * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > LookupCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * キャッシュされている値を返す（無い場合や期限切れの場合はnull）
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+            hits.increment();
+            return entry.value;
+        }
+        if (entry != null) {
+            entries.remove(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    // 読み込みを始める前に取得し、put に渡す
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // 読み込み開始以降に無効化されていなければ格納する（null は格納しないため、該当なしは呼び出し側の番兵値で格納する）
+    public synchronized void put(K key, V value, long loadedGeneration) {
+        if (value == null || ttlNanos == 0 || loadedGeneration != generation) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return String.format("%d件, ヒット %d / %d (%.1f%%)", size(), hitCount, total,
+                total == 0 ? 0.0 : hitCount * 100.0 / total);
+    }
+}
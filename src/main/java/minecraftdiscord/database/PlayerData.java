@@ -1,5 +1,10 @@
 package minecraftdiscord.database;
 
+import org.bukkit.entity.EntityType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
 public class PlayerData {
     private String minecraftUuid;
     private String minecraftName;
@@ -13,6 +18,7 @@ public class PlayerData {
     private double lastX;
     private double lastY;
     private double lastZ;
+    private Map<EntityType, Integer> killsByType = new EnumMap<>(EntityType.class);
 
     public PlayerData() {
         // デフォルトコンストラクタ
@@ -115,6 +121,14 @@ public class PlayerData {
         this.lastZ = lastZ;
     }
 
+    public Map<EntityType, Integer> getKillsByType() {
+        return killsByType;
+    }
+
+    public void setKillsByType(Map<EntityType, Integer> killsByType) {
+        this.killsByType = killsByType;
+    }
+
     // プレイ時間のフォーマット（時間:分）
     public String getFormattedPlayTime() {
         int hours = playTimeMinutes / 60;
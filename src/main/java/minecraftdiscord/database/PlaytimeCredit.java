@@ -0,0 +1,31 @@
+package minecraftdiscord.database;
+
+import java.util.UUID;
+
+/**
+ * 指定した日に加算するプレイ時間（分）
+ */
+public final class PlaytimeCredit {
+
+    private final UUID playerUuid;
+    private final long epochDay;
+    private final int minutes;
+
+    public PlaytimeCredit(UUID playerUuid, long epochDay, int minutes) {
+        this.playerUuid = playerUuid;
+        this.epochDay = epochDay;
+        this.minutes = minutes;
+    }
+
+    public UUID getPlayerUuid() {
+        return playerUuid;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public int getMinutes() {
+        return minutes;
+    }
+}
@@ -0,0 +1,37 @@
+package minecraftdiscord.database;
+
+import java.util.UUID;
+
+/**
+ * データベースに保存するプレイヤーの最新座標
+ */
+public final class PositionCheckpoint {
+
+    private final UUID playerUuid;
+    private final double x;
+    private final double y;
+    private final double z;
+
+    public PositionCheckpoint(UUID playerUuid, double x, double y, double z) {
+        this.playerUuid = playerUuid;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public UUID getPlayerUuid() {
+        return playerUuid;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+}
@@ -0,0 +1,134 @@
+package minecraftdiscord.database;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 読み取り専用のSQLite接続プール（WALモードで書き込みと並行して読み取る）
+ */
+class ReadConnectionPool {
+
+    @FunctionalInterface
+    interface ReadTask<T> {
+        T run(StatementSource source) throws SQLException;
+    }
+
+    private static final class PooledConnection implements StatementSource {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statementCache = new HashMap<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public PreparedStatement statement(String sql) throws SQLException {
+            PreparedStatement ps = statementCache.get(sql);
+            if (ps == null) {
+                ps = connection.prepareStatement(sql);
+                statementCache.put(sql, ps);
+            }
+            return ps;
+        }
+
+        private void close() throws SQLException {
+            for (PreparedStatement ps : statementCache.values()) {
+                ps.close();
+            }
+            statementCache.clear();
+            connection.close();
+        }
+    }
+
+    private final Logger logger;
+    private final int size;
+    private final ExecutorService executor;
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new ArrayList<>();
+
+    ReadConnectionPool(Logger logger, int size) {
+        this.logger = logger;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "MinecraftDiscord-DatabaseRead-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 読み取り接続を開く（スキーマ作成後に書き込みスレッドから呼ぶ）
+    void open(String url, List<String> pragmas) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            Connection connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                for (String pragma : pragmas) {
+                    statement.execute(pragma);
+                }
+                // 読み取り専用として扱う
+                statement.execute("PRAGMA query_only = ON");
+            }
+            KillTypeCodec.registerFunctions(connection);
+
+            PooledConnection pooled = new PooledConnection(connection);
+            synchronized (all) {
+                all.add(pooled);
+            }
+            idle.add(pooled);
+        }
+    }
+
+    // 空いている読み取り接続で処理を実行する（接続が開かれるまでは待機する）
+    <T> CompletableFuture<T> submit(ReadTask<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            PooledConnection pooled;
+            try {
+                pooled = idle.poll(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            if (pooled == null) {
+                throw new CompletionException(new SQLException("読み取り用のデータベース接続を取得できませんでした。"));
+            }
+
+            try {
+                return task.run(pooled);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                idle.add(pooled);
+            }
+        }, executor);
+    }
+
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("読み取りスレッドの終了待ちがタイムアウトしました。");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (all) {
+            for (PooledConnection pooled : all) {
+                try {
+                    pooled.close();
+                } catch (SQLException e) {
+                    logger.severe("読み取り接続を閉じる際にエラーが発生しました: " + e.getMessage());
+                }
+            }
+            all.clear();
+        }
+    }
+}
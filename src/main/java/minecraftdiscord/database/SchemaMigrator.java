@@ -0,0 +1,396 @@
+package minecraftdiscord.database;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * schema_version テーブルでスキーマのバージョンを管理し、未適用のマイグレーションを順番に実行する
+ */
+class SchemaMigrator {
+
+    @FunctionalInterface
+    interface MigrationStep {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    static final class Migration {
+        private final int version;
+        private final String description;
+        private final MigrationStep step;
+
+        Migration(int version, String description, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final Connection connection;
+    private final Logger logger;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    SchemaMigrator(Connection connection, Logger logger) {
+        this.connection = connection;
+        this.logger = logger;
+        registerMigrations();
+    }
+
+    // マイグレーション一覧（追加する場合は末尾に新しいバージョン番号で追記する。適用済みのものは変更しない）
+    private void registerMigrations() {
+        add(1, "初期テーブルを作成", sql(
+                "CREATE TABLE IF NOT EXISTS players (" +
+                        "minecraft_uuid TEXT PRIMARY KEY, " +
+                        "minecraft_name TEXT, " +
+                        "discord_id TEXT, " +
+                        "registered_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS player_stats (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "minecraft_uuid TEXT, " +
+                        "date TEXT, " +
+                        "kills INTEGER DEFAULT 0, " +
+                        "deaths INTEGER DEFAULT 0, " +
+                        "distance_traveled DOUBLE DEFAULT 0, " +
+                        "daily_distance DOUBLE DEFAULT 0, " +
+                        "play_time_minutes INTEGER DEFAULT 0, " +
+                        "achievements_count INTEGER DEFAULT 0, " +
+                        "last_x DOUBLE DEFAULT 0, " +
+                        "last_y DOUBLE DEFAULT 0, " +
+                        "last_z DOUBLE DEFAULT 0, " +
+                        "FOREIGN KEY (minecraft_uuid) REFERENCES players (minecraft_uuid), " +
+                        "UNIQUE (minecraft_uuid, date)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS player_achievements (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "minecraft_uuid TEXT, " +
+                        "achievement_key TEXT, " +
+                        "unlocked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (minecraft_uuid) REFERENCES players (minecraft_uuid), " +
+                        "UNIQUE (minecraft_uuid, achievement_key)" +
+                        ")"
+        ));
+
+        add(2, "スラッシュコマンドとランキング用のインデックスを追加", sql(
+                // getMinecraftUuidByDiscordId をインデックスだけで解決する
+                "CREATE INDEX IF NOT EXISTS idx_players_discord_id ON players (discord_id, minecraft_uuid)",
+                // 日付範囲での集計（getTopPlayers）をテーブルを読まずにインデックスだけで行う
+                "CREATE INDEX IF NOT EXISTS idx_player_stats_date ON player_stats " +
+                        "(date, minecraft_uuid, kills, distance_traveled, achievements_count)"
+        ));
+
+        add(3, "週間・月間ランキングの集計テーブルを追加", sql(
+                "CREATE TABLE IF NOT EXISTS stat_rollups (" +
+                        "period TEXT, " +
+                        "minecraft_uuid TEXT, " +
+                        "kills INTEGER DEFAULT 0, " +
+                        "distance_traveled DOUBLE DEFAULT 0, " +
+                        "achievements_count INTEGER DEFAULT 0, " +
+                        "PRIMARY KEY (period, minecraft_uuid)" +
+                        ")",
+                "CREATE INDEX IF NOT EXISTS idx_stat_rollups_kills ON stat_rollups (period, kills DESC)",
+                "CREATE INDEX IF NOT EXISTS idx_stat_rollups_distance ON stat_rollups (period, distance_traveled DESC)",
+                "CREATE INDEX IF NOT EXISTS idx_stat_rollups_achievements ON stat_rollups (period, achievements_count DESC)",
+                // 集計に含まれている日付範囲（この範囲から外れた日を差し引いて期間を進める）
+                "CREATE TABLE IF NOT EXISTS stat_rollup_windows (" +
+                        "period TEXT PRIMARY KEY, " +
+                        "start_date TEXT, " +
+                        "end_date TEXT" +
+                        ")"
+        ));
+
+        add(4, "期間指定ランキング用の累積統計テーブルを追加", sql(
+                "CREATE TABLE IF NOT EXISTS player_stats_cumulative (" +
+                        "minecraft_uuid TEXT NOT NULL, " +
+                        "date TEXT NOT NULL, " +
+                        "cum_kills INTEGER DEFAULT 0, " +
+                        "cum_distance DOUBLE DEFAULT 0, " +
+                        "cum_achievements INTEGER DEFAULT 0, " +
+                        "PRIMARY KEY (minecraft_uuid, date)" +
+                        ") WITHOUT ROWID",
+                // 既存の日次データから累積値を作成
+                "INSERT OR REPLACE INTO player_stats_cumulative " +
+                        "(minecraft_uuid, date, cum_kills, cum_distance, cum_achievements) " +
+                        "SELECT minecraft_uuid, date, SUM(kills) OVER w, SUM(distance_traveled) OVER w, " +
+                        "SUM(achievements_count) OVER w FROM player_stats " +
+                        "WINDOW w AS (PARTITION BY minecraft_uuid ORDER BY date ROWS UNBOUNDED PRECEDING)"
+        ));
+
+        add(5, "日次データの週・月単位への集約に対応", sql(
+                // day: 日次データ、week / month: date を開始日とする集約行
+                "ALTER TABLE player_stats ADD COLUMN granularity TEXT NOT NULL DEFAULT 'day'"
+        ));
+
+        add(6, "プレイヤーを整数ID、日付をエポック日で保存する形式に変換", sql(
+                // players: 整数の player_id と16バイトのUUID。統計のみのプレイヤーは discord_id が NULL の行になる
+                "CREATE TABLE players_v6 (" +
+                        "player_id INTEGER PRIMARY KEY, " +
+                        "uuid BLOB NOT NULL UNIQUE, " +
+                        "minecraft_name TEXT, " +
+                        "discord_id TEXT, " +
+                        "registered_at TIMESTAMP" +
+                        ")",
+                "INSERT INTO players_v6 (uuid, minecraft_name, discord_id, registered_at) " +
+                        "SELECT unhex(replace(minecraft_uuid, '-', '')), minecraft_name, discord_id, registered_at " +
+                        "FROM players WHERE length(unhex(replace(minecraft_uuid, '-', ''))) = 16",
+                "INSERT OR IGNORE INTO players_v6 (uuid) SELECT uuid FROM (" +
+                        "SELECT unhex(replace(minecraft_uuid, '-', '')) AS uuid FROM player_stats " +
+                        "UNION SELECT unhex(replace(minecraft_uuid, '-', '')) FROM player_achievements " +
+                        "UNION SELECT unhex(replace(minecraft_uuid, '-', '')) FROM player_stats_cumulative" +
+                        ") WHERE length(uuid) = 16",
+
+                "CREATE TABLE player_stats_v6 (" +
+                        "player_id INTEGER NOT NULL, " +
+                        "epoch_day INTEGER NOT NULL, " +
+                        "granularity TEXT NOT NULL DEFAULT 'day', " +
+                        "kills INTEGER DEFAULT 0, " +
+                        "deaths INTEGER DEFAULT 0, " +
+                        "distance_traveled DOUBLE DEFAULT 0, " +
+                        "daily_distance DOUBLE DEFAULT 0, " +
+                        "play_time_minutes INTEGER DEFAULT 0, " +
+                        "achievements_count INTEGER DEFAULT 0, " +
+                        "last_x DOUBLE DEFAULT 0, " +
+                        "last_y DOUBLE DEFAULT 0, " +
+                        "last_z DOUBLE DEFAULT 0, " +
+                        "PRIMARY KEY (player_id, epoch_day), " +
+                        "FOREIGN KEY (player_id) REFERENCES players (player_id)" +
+                        ") WITHOUT ROWID",
+                "INSERT INTO player_stats_v6 SELECT p.player_id, unixepoch(s.date) / 86400, s.granularity, " +
+                        "s.kills, s.deaths, s.distance_traveled, s.daily_distance, s.play_time_minutes, " +
+                        "s.achievements_count, s.last_x, s.last_y, s.last_z " +
+                        "FROM player_stats s JOIN players_v6 p ON p.uuid = unhex(replace(s.minecraft_uuid, '-', '')) " +
+                        "WHERE unixepoch(s.date) IS NOT NULL",
+
+                "CREATE TABLE player_achievements_v6 (" +
+                        "player_id INTEGER NOT NULL, " +
+                        "achievement_key TEXT NOT NULL, " +
+                        "unlocked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "PRIMARY KEY (player_id, achievement_key), " +
+                        "FOREIGN KEY (player_id) REFERENCES players (player_id)" +
+                        ") WITHOUT ROWID",
+                "INSERT OR IGNORE INTO player_achievements_v6 SELECT p.player_id, a.achievement_key, a.unlocked_at " +
+                        "FROM player_achievements a JOIN players_v6 p ON p.uuid = unhex(replace(a.minecraft_uuid, '-', ''))",
+
+                "CREATE TABLE player_stats_cumulative_v6 (" +
+                        "player_id INTEGER NOT NULL, " +
+                        "epoch_day INTEGER NOT NULL, " +
+                        "cum_kills INTEGER DEFAULT 0, " +
+                        "cum_distance DOUBLE DEFAULT 0, " +
+                        "cum_achievements INTEGER DEFAULT 0, " +
+                        "PRIMARY KEY (player_id, epoch_day)" +
+                        ") WITHOUT ROWID",
+                "INSERT INTO player_stats_cumulative_v6 SELECT p.player_id, unixepoch(c.date) / 86400, " +
+                        "c.cum_kills, c.cum_distance, c.cum_achievements " +
+                        "FROM player_stats_cumulative c JOIN players_v6 p ON p.uuid = unhex(replace(c.minecraft_uuid, '-', '')) " +
+                        "WHERE unixepoch(c.date) IS NOT NULL",
+
+                // ランキング集計は player_stats から作り直せるので移行せず、次回の起動時に再集計する
+                "CREATE TABLE stat_rollups_v6 (" +
+                        "period TEXT NOT NULL, " +
+                        "player_id INTEGER NOT NULL, " +
+                        "kills INTEGER DEFAULT 0, " +
+                        "distance_traveled DOUBLE DEFAULT 0, " +
+                        "achievements_count INTEGER DEFAULT 0, " +
+                        "PRIMARY KEY (period, player_id)" +
+                        ") WITHOUT ROWID",
+                "CREATE TABLE stat_rollup_windows_v6 (" +
+                        "period TEXT PRIMARY KEY, " +
+                        "start_day INTEGER, " +
+                        "end_day INTEGER" +
+                        ")",
+
+                "DROP TABLE player_stats",
+                "DROP TABLE player_achievements",
+                "DROP TABLE player_stats_cumulative",
+                "DROP TABLE stat_rollups",
+                "DROP TABLE stat_rollup_windows",
+                "DROP TABLE players",
+                "ALTER TABLE players_v6 RENAME TO players",
+                "ALTER TABLE player_stats_v6 RENAME TO player_stats",
+                "ALTER TABLE player_achievements_v6 RENAME TO player_achievements",
+                "ALTER TABLE player_stats_cumulative_v6 RENAME TO player_stats_cumulative",
+                "ALTER TABLE stat_rollups_v6 RENAME TO stat_rollups",
+                "ALTER TABLE stat_rollup_windows_v6 RENAME TO stat_rollup_windows",
+
+                "CREATE INDEX idx_players_discord_id ON players (discord_id, uuid)",
+                "CREATE INDEX idx_player_stats_day ON player_stats " +
+                        "(epoch_day, player_id, kills, distance_traveled, achievements_count)",
+                "CREATE INDEX idx_stat_rollups_kills ON stat_rollups (period, kills DESC)",
+                "CREATE INDEX idx_stat_rollups_distance ON stat_rollups (period, distance_traveled DESC)",
+                "CREATE INDEX idx_stat_rollups_achievements ON stat_rollups (period, achievements_count DESC)"
+        ));
+
+        // モブの種類ごとのキル数は日ごとの行に1つのBLOBとしてまとめて保存する（KillTypeCodec）
+        add(7, "モブの種類ごとのキル数を追加", sql(
+                "CREATE TABLE entity_types (" +
+                        "type_id INTEGER PRIMARY KEY, " +
+                        "name TEXT NOT NULL UNIQUE" +
+                        ")",
+                "ALTER TABLE player_stats ADD COLUMN kills_by_type BLOB"
+        ));
+
+        // 実績はキーを整数IDに置き換え、プレイヤーごとに解除済みIDのビット集合として保存する（AdvancementDictionary）
+        add(8, "実績を進捗の辞書とビット集合に変換", connection -> {
+            sql(
+                    "CREATE TABLE advancement_keys (" +
+                            "advancement_id INTEGER PRIMARY KEY, " +
+                            "advancement_key TEXT NOT NULL UNIQUE" +
+                            ")",
+                    "INSERT INTO advancement_keys (advancement_key) " +
+                            "SELECT DISTINCT achievement_key FROM player_achievements ORDER BY achievement_key",
+                    "CREATE TABLE player_advancements (" +
+                            "player_id INTEGER PRIMARY KEY, " +
+                            "unlocked BLOB NOT NULL, " +
+                            "FOREIGN KEY (player_id) REFERENCES players (player_id)" +
+                            ")"
+            ).apply(connection);
+
+            try (Statement select = connection.createStatement();
+                 ResultSet rs = select.executeQuery(
+                         "SELECT a.player_id, k.advancement_id FROM player_achievements a " +
+                                 "JOIN advancement_keys k ON k.advancement_key = a.achievement_key " +
+                                 "ORDER BY a.player_id");
+                 PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO player_advancements (player_id, unlocked) VALUES (?, ?)")) {
+                int playerId = -1;
+                BitSet unlocked = new BitSet();
+                while (rs.next()) {
+                    if (rs.getInt(1) != playerId) {
+                        insertUnlocked(insert, playerId, unlocked);
+                        playerId = rs.getInt(1);
+                        unlocked = new BitSet();
+                    }
+                    unlocked.set(rs.getInt(2));
+                }
+                insertUnlocked(insert, playerId, unlocked);
+            }
+
+            sql("DROP TABLE player_achievements").apply(connection);
+        });
+
+        // モブ別ランキングを日ごとの行の走査ではなく、累積値の主キー検索で求める（KillTypeCumulative）
+        add(9, "モブの種類ごとの累積キル数テーブルを追加", connection -> {
+            sql(
+                    "CREATE TABLE kill_type_cumulative (" +
+                            "type_id INTEGER NOT NULL, " +
+                            "player_id INTEGER NOT NULL, " +
+                            "epoch_day INTEGER NOT NULL, " +
+                            "cum_kills INTEGER NOT NULL DEFAULT 0, " +
+                            "PRIMARY KEY (type_id, player_id, epoch_day)" +
+                            ") WITHOUT ROWID"
+            ).apply(connection);
+
+            // 既存の日ごとのキル数からプレイヤーごとに累積値を作成
+            try (Statement select = connection.createStatement();
+                 ResultSet rs = select.executeQuery(
+                         "SELECT player_id, epoch_day, kills_by_type FROM player_stats " +
+                                 "WHERE kills_by_type IS NOT NULL ORDER BY player_id, epoch_day");
+                 PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO kill_type_cumulative (type_id, player_id, epoch_day, cum_kills) VALUES (?, ?, ?, ?)")) {
+                int playerId = -1;
+                int[] totals = new int[0];
+                while (rs.next()) {
+                    if (rs.getInt(1) != playerId) {
+                        playerId = rs.getInt(1);
+                        totals = new int[0];
+                    }
+
+                    int[] counts = KillTypeCodec.decode(rs.getBytes(3));
+                    if (counts.length > totals.length) {
+                        totals = Arrays.copyOf(totals, counts.length);
+                    }
+                    for (int typeId = 0; typeId < counts.length; typeId++) {
+                        if (counts[typeId] > 0) {
+                            totals[typeId] += counts[typeId];
+                            insert.setInt(1, typeId);
+                            insert.setInt(2, playerId);
+                            insert.setLong(3, rs.getLong(2));
+                            insert.setInt(4, totals[typeId]);
+                            insert.addBatch();
+                        }
+                    }
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    private void add(int version, String description, MigrationStep step) {
+        migrations.add(new Migration(version, description, step));
+    }
+
+    private static MigrationStep sql(String... statements) {
+        return connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+            }
+        };
+    }
+
+    // v8: 1人分の解除済み進捗を保存する
+    private static void insertUnlocked(PreparedStatement insert, int playerId, BitSet unlocked) throws SQLException {
+        if (playerId < 0 || unlocked.isEmpty()) {
+            return;
+        }
+        insert.setInt(1, playerId);
+        insert.setBytes(2, unlocked.toByteArray());
+        insert.executeUpdate();
+    }
+
+    // 未適用のマイグレーションをバージョン順に1件ずつトランザクションで適用する
+    void migrate() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS schema_version (" +
+                            "version INTEGER PRIMARY KEY, " +
+                            "description TEXT, " +
+                            "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                            ")"
+            );
+        }
+
+        int currentVersion = getCurrentVersion();
+
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.version > currentVersion) {
+                pending.add(migration);
+            }
+        }
+        pending.sort((a, b) -> Integer.compare(a.version, b.version));
+
+        for (Migration migration : pending) {
+            connection.setAutoCommit(false);
+            try {
+                migration.step.apply(connection);
+
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    ps.setInt(1, migration.version);
+                    ps.setString(2, migration.description);
+                    ps.executeUpdate();
+                }
+
+                connection.commit();
+                logger.info("データベースのマイグレーションを適用しました: v" + migration.version + " " + migration.description);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("マイグレーション v" + migration.version + " の適用に失敗しました: " + e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    int getCurrentVersion() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
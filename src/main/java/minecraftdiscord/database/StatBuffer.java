@@ -0,0 +1,166 @@
+package minecraftdiscord.database;
+
+import org.bukkit.entity.EntityType;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * ゲーム内イベントごとの統計更新をメモリ上に溜め、まとめてデータベースへ書き込むためのバッファ
+ *
+ * 差分は統計が発生した日ごとに分けて溜めるため、日付が変わる直前の分は書き込みが日付の変更後でも前日の行に入る。
+ */
+public class StatBuffer {
+
+    private static final int ENTITY_TYPE_COUNT = EntityType.values().length;
+
+    private final Clock clock;
+
+    // エポック日 → プレイヤーごとの差分（日付順）
+    private Map<Long, Map<UUID, StatDelta>> pending = new TreeMap<>();
+
+    // 現在の日付とその範囲（日付が変わるまでは時刻の比較だけで済ませる。キーはイベントごとにボクシングしないよう保持する）
+    private Long currentDay;
+    private long currentDayStartMillis;
+    private long nextDayStartMillis = Long.MIN_VALUE;
+
+    public StatBuffer() {
+        this(Clock.systemDefaultZone());
+    }
+
+    StatBuffer(Clock clock) {
+        this.clock = clock;
+    }
+
+    public synchronized void addKill(UUID uuid, EntityType type) {
+        StatDelta delta = deltaFor(uuid, today(clock.millis()));
+        delta.kills++;
+        if (delta.killsByType == null) {
+            delta.killsByType = new int[ENTITY_TYPE_COUNT];
+        }
+        delta.killsByType[type.ordinal()]++;
+    }
+
+    public synchronized void addDeath(UUID uuid) {
+        deltaFor(uuid, today(clock.millis())).deaths++;
+    }
+
+    public synchronized void addDistance(UUID uuid, double distance) {
+        deltaFor(uuid, today(clock.millis())).distance += distance;
+    }
+
+    /**
+     * sinceMillis から現在までに移動した距離を加算する（日付をまたいだ場合は時間の割合で前日と今日に分ける）
+     */
+    public synchronized void addDistance(UUID uuid, double distance, long sinceMillis) {
+        long now = clock.millis();
+        Long day = today(now);
+        if (sinceMillis < currentDayStartMillis && sinceMillis < now) {
+            double beforeMidnight = distance * (currentDayStartMillis - sinceMillis) / (now - sinceMillis);
+            long sinceDay = LocalDate.ofInstant(Instant.ofEpochMilli(sinceMillis), clock.getZone()).toEpochDay();
+            deltaFor(uuid, sinceDay).distance += beforeMidnight;
+            distance -= beforeMidnight;
+        }
+        deltaFor(uuid, day).distance += distance;
+    }
+
+    public synchronized void addAchievement(UUID uuid, int advancementId) {
+        StatDelta delta = deltaFor(uuid, today(clock.millis()));
+        if (delta.achievementIds == null) {
+            delta.achievementIds = new BitSet();
+        }
+        delta.achievementIds.set(advancementId);
+    }
+
+    /**
+     * 溜まっている全プレイヤーの差分を日付順に取り出してバッファを空にする
+     */
+    public synchronized Collection<StatDelta> drainAll() {
+        Map<Long, Map<UUID, StatDelta>> drained = pending;
+        pending = new TreeMap<>();
+
+        List<StatDelta> deltas = new ArrayList<>();
+        for (Map<UUID, StatDelta> day : drained.values()) {
+            deltas.addAll(day.values());
+        }
+        return deltas;
+    }
+
+    /**
+     * 指定プレイヤーの差分だけを日付順に取り出す（退出時用。無い場合は空）
+     */
+    public synchronized List<StatDelta> drain(UUID uuid) {
+        List<StatDelta> deltas = new ArrayList<>();
+        Iterator<Map<UUID, StatDelta>> days = pending.values().iterator();
+        while (days.hasNext()) {
+            Map<UUID, StatDelta> day = days.next();
+            StatDelta delta = day.remove(uuid);
+            if (delta != null) {
+                deltas.add(delta);
+            }
+            if (day.isEmpty()) {
+                days.remove();
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * 書き込みに失敗した差分をバッファに戻す（取り出した後に溜まった同じ日の差分と合算する）
+     */
+    public synchronized void restore(Collection<StatDelta> deltas) {
+        for (StatDelta failed : deltas) {
+            StatDelta delta = deltaFor(failed.getPlayerUuid(), failed.getEpochDay());
+            delta.kills += failed.kills;
+            delta.deaths += failed.deaths;
+            delta.distance += failed.distance;
+
+            if (failed.killsByType != null) {
+                if (delta.killsByType == null) {
+                    delta.killsByType = new int[ENTITY_TYPE_COUNT];
+                }
+                for (int ordinal = 0; ordinal < failed.killsByType.length; ordinal++) {
+                    delta.killsByType[ordinal] += failed.killsByType[ordinal];
+                }
+            }
+
+            if (failed.achievementIds != null) {
+                if (delta.achievementIds == null) {
+                    delta.achievementIds = new BitSet();
+                }
+                delta.achievementIds.or(failed.achievementIds);
+            }
+        }
+    }
+
+    // 現在のエポック日（日付が変わったときだけ範囲を求め直す）
+    private Long today(long now) {
+        if (now >= nextDayStartMillis || now < currentDayStartMillis) {
+            LocalDate today = LocalDate.ofInstant(Instant.ofEpochMilli(now), clock.getZone());
+            currentDay = today.toEpochDay();
+            currentDayStartMillis = today.atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+            nextDayStartMillis = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        }
+        return currentDay;
+    }
+
+    private StatDelta deltaFor(UUID uuid, Long epochDay) {
+        Map<UUID, StatDelta> day = pending.computeIfAbsent(epochDay, key -> new HashMap<>());
+        StatDelta delta = day.get(uuid);
+        if (delta == null) {
+            delta = new StatDelta(uuid, epochDay);
+            day.put(uuid, delta);
+        }
+        return delta;
+    }
+}
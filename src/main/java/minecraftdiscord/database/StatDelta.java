@@ -0,0 +1,63 @@
+package minecraftdiscord.database;
+
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * まだデータベースに書き込まれていないプレイヤー1人分の統計差分
+ */
+public final class StatDelta {
+
+    private final UUID playerUuid;
+    // 統計が発生した日のエポック日（この日の行に書き込む）
+    private final long epochDay;
+    int kills;
+    int deaths;
+    double distance;
+
+    // EntityType.ordinal() ごとのキル数（キルがあるまで作らない）
+    int[] killsByType;
+
+    // 解除した進捗のID（解除があるまで作らない）
+    BitSet achievementIds;
+
+    // 書き込み時に実際に新しく追加された実績の数
+    int newAchievements;
+
+    StatDelta(UUID playerUuid, long epochDay) {
+        this.playerUuid = playerUuid;
+        this.epochDay = epochDay;
+    }
+
+    public UUID getPlayerUuid() {
+        return playerUuid;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public int getKills() {
+        return kills;
+    }
+
+    public int[] getKillsByType() {
+        return killsByType;
+    }
+
+    public int getDeaths() {
+        return deaths;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public BitSet getAchievementIds() {
+        return achievementIds;
+    }
+
+    public int getNewAchievements() {
+        return newAchievements;
+    }
+}
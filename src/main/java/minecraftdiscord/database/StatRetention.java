@@ -0,0 +1,121 @@
+package minecraftdiscord.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 古い player_stats を週・月単位の集約行にまとめ、すべて0の日を削除する
+ *
+ * 集約行は期間の開始日（週は月曜日、月は1日）の日付で保存し、granularity 列で区別する。
+ * /pos で使う座標は期間内で最後に保存されたものを集約行に残す。
+ * 累積統計（モブ別の累積キル数を含む）も同じ単位まで間引くため、古い期間の期間指定ランキングは週・月の境界単位で集計される。
+ * 書き込みスレッドからのみ呼び出し、トランザクションは呼び出し側で管理する。
+ */
+class StatRetention {
+
+    // 月間ランキングの集計期間（最大31日＋当日）より古い日だけを対象にする
+    static final int MIN_DAILY_DAYS = 35;
+
+    // エポック日（1970-01-01は木曜日）から週の月曜日・月の1日を求める式
+    private static final String WEEK_START = "(epoch_day - (epoch_day + 3) % 7)";
+    private static final String MONTH_START = "(unixepoch(epoch_day * 86400, 'unixepoch', 'start of month') / 86400)";
+
+    // 座標が保存されている行（保存していない日の行は初期値の0のまま）
+    private static final String HAS_POSITION = "NOT (last_x = 0 AND last_y = 0 AND last_z = 0)";
+
+    private final StatementSource db;
+
+    StatRetention(StatementSource db) {
+        this.db = db;
+    }
+
+    /**
+     * dailyDays 日より古い日次データを週単位に、weeklyDays 日より古いデータを月単位にまとめる
+     *
+     * @return 削除・集約された日次データの行数
+     */
+    int apply(LocalDate today, int dailyDays, int weeklyDays) throws SQLException {
+        dailyDays = Math.max(MIN_DAILY_DAYS, dailyDays);
+        weeklyDays = Math.max(dailyDays, weeklyDays);
+
+        // 区切りを週・月の開始日に合わせ、途中までの期間をまとめないようにする
+        long weekCutoff = today.minusDays(dailyDays).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+        long monthCutoff = today.minusDays(weeklyDays).withDayOfMonth(1).toEpochDay();
+
+        // 統計がすべて0の日を削除（今日の行は使用中なので残し、座標が保存されている日は /pos で使うので残す）
+        PreparedStatement deleteEmpty = db.statement(
+                "DELETE FROM player_stats WHERE granularity = 'day' AND epoch_day < ? " +
+                        "AND kills = 0 AND deaths = 0 AND distance_traveled = 0 AND daily_distance = 0 " +
+                        "AND play_time_minutes = 0 AND achievements_count = 0 AND NOT " + HAS_POSITION);
+        deleteEmpty.setLong(1, today.toEpochDay());
+        int removed = deleteEmpty.executeUpdate();
+
+        // 週をまたいで月が変わる場合は週の開始日の月に含める
+        removed += collapse("'day', 'week'", MONTH_START, "month", monthCutoff);
+        removed += collapse("'day'", WEEK_START, "week", weekCutoff);
+
+        for (String table : new String[]{"player_stats_cumulative", "kill_type_cumulative"}) {
+            thinCumulative(table, "unixepoch(" + table + ".epoch_day * 86400, 'unixepoch', 'start of month', '+1 month') / 86400", monthCutoff);
+            thinCumulative(table, table + ".epoch_day - (" + table + ".epoch_day + 3) % 7 + 7", weekCutoff);
+        }
+
+        return removed;
+    }
+
+    // cutoff より前の sourceGranularities の行を bucketStart ごとの集約行にまとめる
+    private int collapse(String sourceGranularities, String bucketStart, String granularity, long cutoff) throws SQLException {
+        // 集約先の日付に既存の行がある場合、まとめる対象の行なら置き換え、既存の集約行なら加算する
+        // （座標は MAX() と同じ行の値になる SQLite の集約の仕様を使い、期間内で最後に保存されたものを残す）
+        String keepPosition = "CASE WHEN granularity IN (" + sourceGranularities + ") OR NOT (excluded.last_x = 0 " +
+                "AND excluded.last_y = 0 AND excluded.last_z = 0) THEN excluded.%1$s ELSE %1$s END";
+        PreparedStatement summarize = db.statement(
+                "INSERT INTO player_stats (player_id, epoch_day, granularity, kills, deaths, distance_traveled, " +
+                        "daily_distance, play_time_minutes, achievements_count, kills_by_type, last_x, last_y, last_z) " +
+                        "SELECT player_id, bucket_start, '" + granularity + "', kills, deaths, distance_traveled, " +
+                        "daily_distance, play_time_minutes, achievements_count, kills_by_type, last_x, last_y, last_z FROM (" +
+                        "SELECT player_id, " + bucketStart + " AS bucket_start, SUM(kills) AS kills, SUM(deaths) AS deaths, " +
+                        "SUM(distance_traveled) AS distance_traveled, SUM(daily_distance) AS daily_distance, " +
+                        "SUM(play_time_minutes) AS play_time_minutes, SUM(achievements_count) AS achievements_count, " +
+                        "kill_types_sum(kills_by_type) AS kills_by_type, " +
+                        "MAX(CASE WHEN " + HAS_POSITION + " THEN epoch_day END) AS position_day, last_x, last_y, last_z " +
+                        "FROM player_stats WHERE granularity IN (" + sourceGranularities + ") AND epoch_day < ? " +
+                        "GROUP BY player_id, " + bucketStart + ") " +
+                        // ON CONFLICT の前の WHERE は構文の曖昧さを避けるために必要
+                        "WHERE true " +
+                        "ON CONFLICT (player_id, epoch_day) DO UPDATE SET " +
+                        "kills = CASE WHEN granularity IN (" + sourceGranularities + ") THEN 0 ELSE kills END + excluded.kills, " +
+                        "deaths = CASE WHEN granularity IN (" + sourceGranularities + ") THEN 0 ELSE deaths END + excluded.deaths, " +
+                        "distance_traveled = CASE WHEN granularity IN (" + sourceGranularities + ") THEN 0 ELSE distance_traveled END + excluded.distance_traveled, " +
+                        "daily_distance = CASE WHEN granularity IN (" + sourceGranularities + ") THEN 0 ELSE daily_distance END + excluded.daily_distance, " +
+                        "play_time_minutes = CASE WHEN granularity IN (" + sourceGranularities + ") THEN 0 ELSE play_time_minutes END + excluded.play_time_minutes, " +
+                        "achievements_count = CASE WHEN granularity IN (" + sourceGranularities + ") THEN 0 ELSE achievements_count END + excluded.achievements_count, " +
+                        "kills_by_type = kill_types_add(CASE WHEN granularity IN (" + sourceGranularities + ") THEN NULL ELSE kills_by_type END, excluded.kills_by_type), " +
+                        "last_x = " + String.format(keepPosition, "last_x") + ", " +
+                        "last_y = " + String.format(keepPosition, "last_y") + ", " +
+                        "last_z = " + String.format(keepPosition, "last_z") + ", " +
+                        "granularity = excluded.granularity");
+        summarize.setLong(1, cutoff);
+        summarize.executeUpdate();
+
+        // まとめた元の行を削除（集約行は granularity が変わっているので残る）
+        PreparedStatement delete = db.statement(
+                "DELETE FROM player_stats WHERE granularity IN (" + sourceGranularities + ") AND epoch_day < ?");
+        delete.setLong(1, cutoff);
+        return delete.executeUpdate();
+    }
+
+    // cutoff より前の累積統計を、期間ごとに最後の行だけ残して間引く（モブ別の累積キル数は種類ごとに間引く）
+    private void thinCumulative(String table, String nextBucketStart, long cutoff) throws SQLException {
+        String sameType = table.equals("kill_type_cumulative") ? "AND n.type_id = " + table + ".type_id " : "";
+        PreparedStatement thin = db.statement(
+                "DELETE FROM " + table + " WHERE epoch_day < ? AND EXISTS (" +
+                        "SELECT 1 FROM " + table + " n " +
+                        "WHERE n.player_id = " + table + ".player_id " + sameType +
+                        "AND n.epoch_day > " + table + ".epoch_day AND n.epoch_day < " + nextBucketStart + ")");
+        thin.setLong(1, cutoff);
+        thin.executeUpdate();
+    }
+}
@@ -0,0 +1,11 @@
+package minecraftdiscord.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 接続ごとにキャッシュされたPreparedStatementを取り出す
+ */
+interface StatementSource {
+    PreparedStatement statement(String sql) throws SQLException;
+}
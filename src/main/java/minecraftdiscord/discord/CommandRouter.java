@@ -0,0 +1,151 @@
+package minecraftdiscord.discord;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.discord.commands.SlashCommand;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * スラッシュコマンドを名前で振り分け、処理は専用のスレッドで実行する
+ *
+ * JDAのイベントスレッドでは応答の遅延（deferReply）と処理の投入だけを行う。
+ * 処理にはコマンドごとのタイムアウトを設け、コマンドごとの処理時間を記録する。
+ */
+public class CommandRouter extends ListenerAdapter {
+
+    // コマンドごとの処理時間の記録
+    private static final class CommandStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            long n = count.sum();
+            long averageMillis = n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / n);
+            return n + "回, 平均 " + averageMillis + "ms, 最大 " + TimeUnit.NANOSECONDS.toMillis(maxNanos.get()) + "ms"
+                    + ", タイムアウト " + timeouts.sum() + ", エラー " + failures.sum() + ", 混雑 " + rejected.sum();
+        }
+    }
+
+    private final MinecraftDiscordPlugin plugin;
+    private final Logger logger;
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeoutSeconds;
+
+    // 登録は起動時のみ行い、以降は読み取りだけ
+    private final Map<String, SlashCommand> handlers = new HashMap<>();
+    private final Map<String, Long> timeoutMillis = new HashMap<>();
+    private final Map<String, CommandStats> stats = new HashMap<>();
+
+    public CommandRouter(MinecraftDiscordPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.defaultTimeoutSeconds = Math.max(1, plugin.getConfig().getLong("discord.commands.timeout_seconds", 10));
+
+        int threads = Math.max(1, plugin.getConfig().getInt("discord.commands.threads", 4));
+        int queueSize = Math.max(1, plugin.getConfig().getInt("discord.commands.queue_size", 100));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "MinecraftDiscord-Command-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void register(SlashCommand command) {
+        String name = command.getName();
+        handlers.put(name, command);
+        long timeoutSeconds = plugin.getConfig().getLong("discord.commands.timeouts." + name, defaultTimeoutSeconds);
+        timeoutMillis.put(name, TimeUnit.SECONDS.toMillis(Math.max(1, timeoutSeconds)));
+        stats.put(name, new CommandStats());
+    }
+
+    @Override
+    public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+        SlashCommand command = handlers.get(event.getName());
+        if (command == null) {
+            return;
+        }
+
+        // 3秒以内に応答する必要があるため、処理の投入より先に遅延させる
+        event.deferReply().queue();
+
+        long started = System.nanoTime();
+        try {
+            executor.execute(() -> run(command, event, started));
+        } catch (RejectedExecutionException e) {
+            stats.get(command.getName()).rejected.increment();
+            event.getHook().editOriginal("現在コマンドが混み合っています。しばらくしてからお試しください。").queue();
+        }
+    }
+
+    private void run(SlashCommand command, SlashCommandInteractionEvent event, long started) {
+        String name = command.getName();
+        CommandStats commandStats = stats.get(name);
+
+        CompletableFuture<?> result;
+        try {
+            result = command.handle(event);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.orTimeout(timeoutMillis.get(name), TimeUnit.MILLISECONDS).whenComplete((ignored, error) -> {
+            commandStats.record(System.nanoTime() - started);
+            if (error == null) {
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                commandStats.timeouts.increment();
+                logger.warning("/" + name + " の処理がタイムアウトしました。");
+                event.getHook().editOriginal("処理に時間がかかっています。しばらくしてからもう一度お試しください。").queue();
+            } else {
+                commandStats.failures.increment();
+                logger.severe("/" + name + " の処理中にエラーが発生しました: " + cause.getMessage());
+                cause.printStackTrace();
+                event.getHook().editOriginal("エラーが発生しました。もう一度お試しください。").queue();
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        stats.forEach((name, commandStats) -> logger.info("/" + name + ": " + commandStats));
+    }
+}
@@ -12,26 +12,85 @@ import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 
+import java.time.Duration;
 import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 public class DiscordBot {
 
+    // 送信先が決まらなかったチャットの送信先
+    private static final DiscordRelayQueue.Sink DISCARD = message -> CompletableFuture.completedFuture(null);
+
     private final MinecraftDiscordPlugin plugin;
     private final Logger logger;
     private final String token;
     private final String guildId;
-    private JDA jda;
-    private TextChannel chatBridgeChannel;
+    private volatile JDA jda;
+    private volatile TextChannel chatBridgeChannel;
+    private volatile CommandRouter commandRouter;
+
+    // 起動処理が終わると完了する（失敗した場合も完了する）
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private volatile boolean stopping;
+
+    // チャットブリッジへの送信待ちと送信先（Botで送る場合は起動後に決まり、それまでのチャットは溜めておく）
+    private final DiscordRelayQueue relayQueue;
+    private final CompletableFuture<DiscordRelayQueue.Sink> relaySink = new CompletableFuture<>();
+
+    // チャットブリッジをWebhookで送るかどうかと、その場合のプレイヤーのアイコンのURL
+    private final boolean useWebhooks;
+    private final String avatarUrlTemplate;
 
     public DiscordBot(MinecraftDiscordPlugin plugin, String token, String guildId) {
         this.plugin = plugin;
         this.logger = plugin.getLogger();
         this.token = token;
         this.guildId = guildId;
+
+        boolean webhookMode = "webhook".equalsIgnoreCase(plugin.getConfig().getString("discord.relay.mode", "bot"));
+        if (webhookMode && plugin.getConfig().getStringList("discord.relay.webhook_urls").isEmpty()) {
+            logger.warning("discord.relay.webhook_urls が設定されていないため、チャットブリッジはBotで送信します。");
+            webhookMode = false;
+        }
+        this.useWebhooks = webhookMode;
+        this.avatarUrlTemplate = plugin.getConfig().getString("discord.relay.avatar_url", "");
+
+        // チャットブリッジへの送信は一定時間ごとにまとめて行う
+        this.relayQueue = new DiscordRelayQueue(
+                logger,
+                message -> relaySink.thenCompose(sink -> sink.send(message)),
+                plugin.getConfig().getLong("discord.relay.window_millis", 500),
+                plugin.getConfig().getLong("discord.relay.max_window_millis", 5000),
+                plugin.getConfig().getLong("discord.relay.slow_send_millis", 1000),
+                plugin.getConfig().getInt("discord.relay.max_pending_lines", 1000)
+        );
+
+        // Webhookで送る場合はBotの起動を待たない
+        if (useWebhooks) {
+            relaySink.complete(new WebhookRelayClient(
+                    logger,
+                    plugin.getConfig().getStringList("discord.relay.webhook_urls"),
+                    Duration.ofSeconds(plugin.getConfig().getLong("discord.relay.webhook_timeout_seconds", 10))
+            ));
+            logger.info("チャットブリッジはWebhookで送信します。");
+        }
+    }
+
+    /**
+     * Botを専用のスレッドで起動し、起動処理の完了を返す（メインスレッドはゲートウェイへの接続を待たない）
+     *
+     * 起動までのチャットは送信待ちに溜め、スラッシュコマンドとDiscordからのチャットは起動後に受け付ける。
+     */
+    public CompletableFuture<Void> start() {
+        Thread thread = new Thread(this::connect, "MinecraftDiscord-BotStartup");
+        thread.setDaemon(true);
+        thread.start();
+        return ready;
     }
 
-    public void start() {
+    private void connect() {
         try {
             // JDAの構築とイベント設定
             jda = JDABuilder.createDefault(token)
@@ -43,12 +102,16 @@ public class DiscordBot {
                     .enableCache(EnumSet.of(
                             CacheFlag.MEMBER_OVERRIDES,
                             CacheFlag.VOICE_STATE,
-                            CacheFlag.EMOTE
+                            CacheFlag.EMOJI
                     ))
                     .build();
 
             // 起動を待機
             jda.awaitReady();
+            if (stopping) {
+                jda.shutdownNow();
+                return;
+            }
 
             // チャットブリッジチャンネルを設定
             String channelId = plugin.getConfig().getString("discord.chat_bridge_channel");
@@ -58,6 +121,10 @@ public class DiscordBot {
                     logger.warning("設定されたチャットブリッジチャンネルIDが無効です: " + channelId);
                 }
             }
+            if (!useWebhooks && chatBridgeChannel != null) {
+                TextChannel channel = chatBridgeChannel;
+                relaySink.complete(message -> channel.sendMessage(message.getContent()).submit());
+            }
 
             // Discordのスラッシュコマンドを登録
             registerCommands();
@@ -69,6 +136,10 @@ public class DiscordBot {
         } catch (Exception e) {
             logger.severe("Discord Botの起動中にエラーが発生しました: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            // 送信先が決まらなかった場合、溜めたチャットは捨てる
+            relaySink.complete(DISCARD);
+            ready.complete(null);
         }
     }
 
@@ -89,24 +160,30 @@ public class DiscordBot {
             guild.updateCommands().addCommands(
                     Commands.slash("regist", "マインクラフトIDを登録する")
                             .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "minecraft_id", "あなたのマインクラフトID", true),
-                    Commands.slash("count", "サーバー内で倒した敵の数や死亡回数、移動距離などを表示"),
+                    Commands.slash("count", "サーバー内で倒した敵の数や死亡回数、移動距離などを表示")
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.BOOLEAN, "rank", "ランキングでの順位も表示", false)
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.BOOLEAN, "breakdown", "倒した敵の種類ごとの内訳も表示", false),
                     Commands.slash("time", "サーバー内でのプレイ時間を表示"),
                     Commands.slash("rec", "獲得した実績を表示"),
                     Commands.slash("pos", "現在の座標を表示"),
                     Commands.slash("top", "プレイヤーのランキングを表示")
-                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "type", "ランキングタイプ (kill, distance, achievements)", true)
-                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "period", "期間 (weekly, monthly)", true)
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "type", "ランキングタイプ (kill, distance, achievements, mob)", true)
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "period", "期間 (daily, weekly, monthly, alltime)", false)
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "from", "開始日 (例: 2026-06-01)", false)
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "to", "終了日 (例: 2026-08-31)", false)
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING, "mob", "モブの種類 (type が mob の場合。例: zombie)", false)
+                            .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.BOOLEAN, "me", "自分の順位も表示 (weekly, monthly)", false)
             ).queue();
 
-            // コマンドハンドラを登録
-            jda.addEventListener(
-                    new RegistCommand(plugin),
-                    new CountCommand(plugin),
-                    new TimeCommand(plugin),
-                    new RecCommand(plugin),
-                    new DiscordPosCommand(plugin),  // 名前を変更して衝突を避ける
-                    new TopCommand(plugin)
-            );
+            // コマンドハンドラを登録（振り分けと実行はルーターが行う）
+            commandRouter = new CommandRouter(plugin);
+            commandRouter.register(new RegistCommand(plugin));
+            commandRouter.register(new CountCommand(plugin));
+            commandRouter.register(new TimeCommand(plugin));
+            commandRouter.register(new RecCommand(plugin));
+            commandRouter.register(new DiscordPosCommand(plugin));
+            commandRouter.register(new TopCommand(plugin));
+            jda.addEventListener(commandRouter);
 
             logger.info("Discord スラッシュコマンドが正常に登録されました！");
         } catch (Exception e) {
@@ -116,22 +193,56 @@ public class DiscordBot {
     }
 
     public void shutdown() {
+        stopping = true;
+
+        // 送信待ちのチャットを送り切ってから切断する（起動が終わっていなければ捨てる）
+        relaySink.complete(DISCARD);
+        relayQueue.close();
+
+        JDA jda = this.jda;
         if (jda != null) {
             jda.shutdown();
             logger.info("Discord Botがシャットダウンしました。");
         }
+
+        // 実行中のコマンドを待ってから処理時間を記録する
+        if (commandRouter != null) {
+            commandRouter.shutdown();
+        }
     }
 
+    // メインスレッドの送信タスクに渡す（JDAのスレッドから直接プレイヤーに送らない）
     public void sendMessageToMinecraft(String message) {
-        plugin.getServer().broadcastMessage("[Discord] " + message);
+        plugin.getInboundChatTask().offer("[Discord] " + message);
     }
 
     public void sendMessageToDiscord(String message) {
-        if (chatBridgeChannel != null) {
-            chatBridgeChannel.sendMessage(message).queue();
+        relayQueue.enqueue(new RelayMessage(null, null, message));
+    }
+
+    /**
+     * プレイヤーのチャットを送信する（Webhookの場合はプレイヤーの名前とアイコンで送る）
+     */
+    public void relayChat(String playerName, UUID playerUuid, String message) {
+        if (useWebhooks) {
+            String avatarUrl = avatarUrlTemplate.isEmpty() ? null : avatarUrlTemplate
+                    .replace("{uuid}", playerUuid.toString())
+                    .replace("{name}", playerName);
+            if (WebhookRelayClient.isUsableUsername(playerName)) {
+                relayQueue.enqueue(new RelayMessage(playerName, avatarUrl, message));
+            } else {
+                // Webhookの名前に使えない場合は、Webhookの既定の名前で本文に名前を付けて送る
+                relayQueue.enqueue(new RelayMessage(null, avatarUrl, String.format("**%s**: %s", playerName, message)));
+            }
+        } else {
+            relayQueue.enqueue(new RelayMessage(null, null, String.format("**%s**: %s", playerName, message)));
         }
     }
 
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
     public JDA getJda() {
         return jda;
     }
@@ -0,0 +1,225 @@
+package minecraftdiscord.discord;
+
+import minecraftdiscord.utils.MessageUtils;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * MinecraftからDiscordへ送る行をまとめて送信するキュー
+ *
+ * 待ち時間の間に溜まった行を、順序を保ったまま最大文字数に収まる少数のメッセージにまとめる
+ * （まとめるのは送信者が同じ連続した行のみ）。
+ * 送信は常に1件ずつ行い、送信にかかった時間からレート制限を推定して待ち時間を伸び縮みさせる
+ * （JDAは429を受けると内部で再送を待つため、その分だけ送信完了が遅れる）。
+ */
+public final class DiscordRelayQueue {
+
+    /**
+     * まとめたメッセージの送信先
+     */
+    @FunctionalInterface
+    public interface Sink {
+        CompletableFuture<?> send(RelayMessage message);
+    }
+
+    // 終了時に残りを送り切るまでの待ち時間
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final Logger logger;
+    private final Sink sink;
+    private final long minWindowMillis;
+    private final long maxWindowMillis;
+    private final long slowSendMillis;
+    private final int maxPendingLines;
+
+    private final ScheduledExecutorService executor;
+    private final Queue<RelayMessage> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // 送信の予約済みまたは送信中（送信スレッドは次の予約を自分で行う）
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // 現在の待ち時間（更新は送信スレッドのみ）
+    private volatile long windowMillis;
+
+    // 送信中のメッセージ（終了時はこれを待ってから残りを送る）
+    private volatile CompletableFuture<?> inFlight = CompletableFuture.completedFuture(null);
+
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong sentLines = new AtomicLong();
+    private final AtomicLong droppedLines = new AtomicLong();
+
+    public DiscordRelayQueue(Logger logger, Sink sink, long minWindowMillis, long maxWindowMillis,
+                             long slowSendMillis, int maxPendingLines) {
+        this.logger = logger;
+        this.sink = sink;
+        this.minWindowMillis = Math.max(0, minWindowMillis);
+        this.maxWindowMillis = Math.max(this.minWindowMillis, maxWindowMillis);
+        this.slowSendMillis = slowSendMillis;
+        this.maxPendingLines = Math.max(1, maxPendingLines);
+        this.windowMillis = this.minWindowMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MinecraftDiscord-Relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 1行を送信待ちに追加する（任意のスレッドから呼べる）
+     *
+     * 送信待ちが上限に達している場合は、Discordが長く応答していないと見なしてその行を捨てる。
+     */
+    public void enqueue(RelayMessage line) {
+        if (pendingCount.incrementAndGet() > maxPendingLines) {
+            pendingCount.decrementAndGet();
+            droppedLines.incrementAndGet();
+            return;
+        }
+        pending.add(new RelayMessage(line.getUsername(), line.getAvatarUrl(),
+                MessageUtils.truncateDiscordMessage(line.getContent())));
+
+        if (scheduled.compareAndSet(false, true)) {
+            schedule(windowMillis);
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        try {
+            executor.schedule(this::sendNext, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 終了後の追加は close() で送り切る
+        }
+    }
+
+    // 先頭から最大文字数に収まるだけの行をまとめて1件送る（送信スレッドで実行）
+    private void sendNext() {
+        int[] lines = {0};
+        RelayMessage message = take(lines);
+        if (message == null) {
+            scheduled.set(false);
+            // 予約を解除する間に追加された行があれば改めて予約する
+            if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                schedule(windowMillis);
+            }
+            return;
+        }
+
+        long started = System.nanoTime();
+        CompletableFuture<?> sent;
+        try {
+            sent = sink.send(message);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        inFlight = sent;
+
+        sent.whenCompleteAsync((result, error) -> {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (error != null) {
+                logger.warning("Discordへのチャット送信に失敗しました: " + error.getMessage());
+            } else {
+                sentMessages.incrementAndGet();
+                sentLines.addAndGet(lines[0]);
+            }
+            adapt(error != null || elapsedMillis >= slowSendMillis);
+            // 送信中に溜まった行は待ち時間の後にまとめて送る
+            schedule(windowMillis);
+        }, executor);
+    }
+
+    // 送信が遅い・失敗した場合は待ち時間を倍にし、速い場合は少しずつ戻す
+    void adapt(boolean limited) {
+        if (limited) {
+            windowMillis = Math.min(maxWindowMillis, Math.max(1, windowMillis) * 2);
+        } else {
+            windowMillis = Math.max(minWindowMillis, windowMillis - Math.max(1, windowMillis / 4));
+        }
+    }
+
+    // 先頭の送信者の連続した行を最大文字数に収まるだけ取り出す（取り出した行数を lines[0] に加える）
+    RelayMessage take(int[] lines) {
+        RelayMessage first = pending.peek();
+        if (first == null) {
+            return null;
+        }
+
+        StringBuilder content = new StringBuilder();
+        RelayMessage line;
+        while ((line = pending.peek()) != null && line.sameAuthor(first)) {
+            int length = content.length() == 0
+                    ? line.getContent().length()
+                    : content.length() + 1 + line.getContent().length();
+            if (length > MessageUtils.MAX_DISCORD_CONTENT_LENGTH) {
+                break;
+            }
+            if (content.length() > 0) {
+                content.append('\n');
+            }
+            content.append(pending.poll().getContent());
+            pendingCount.decrementAndGet();
+            lines[0]++;
+        }
+        return new RelayMessage(first.getUsername(), first.getAvatarUrl(), content.toString());
+    }
+
+    /**
+     * 送信を止め、残っている行を送り切る
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT_SECONDS);
+            try {
+                inFlight.get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // 失敗は送信スレッドで記録済み
+            }
+
+            int[] lines = {0};
+            RelayMessage message;
+            while ((message = take(lines)) != null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                sink.send(message).get(remaining, TimeUnit.NANOSECONDS);
+                sentMessages.incrementAndGet();
+                sentLines.addAndGet(lines[0]);
+                lines[0] = 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warning("終了時のDiscordへのチャット送信に失敗しました: " + e.getMessage());
+        }
+
+        if (pendingCount.get() > 0) {
+            logger.warning("Discordに送信できなかったチャット: " + pendingCount.get() + "行");
+        }
+        logger.info("Discordチャット送信: " + this);
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return sentLines.get() + "行を" + sentMessages.get() + "件で送信, 破棄 " + droppedLines.get() + "行";
+    }
+}
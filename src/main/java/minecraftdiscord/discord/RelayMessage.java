@@ -0,0 +1,40 @@
+package minecraftdiscord.discord;
+
+import java.util.Objects;
+
+/**
+ * Discordに送るメッセージ（Webhookで送る場合は送信者の名前とアイコンを付けられる）
+ */
+public final class RelayMessage {
+
+    private final String username;
+    private final String avatarUrl;
+    private final String content;
+
+    /**
+     * @param username  送信者として表示する名前（nullの場合はBotまたはWebhookの既定の名前）
+     * @param avatarUrl 送信者として表示するアイコンのURL（nullの場合は既定のアイコン）
+     */
+    public RelayMessage(String username, String avatarUrl, String content) {
+        this.username = username;
+        this.avatarUrl = avatarUrl;
+        this.content = content;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    // 1つのメッセージにまとめられる（送信者が同じ）かどうか
+    public boolean sameAuthor(RelayMessage other) {
+        return Objects.equals(username, other.username) && Objects.equals(avatarUrl, other.avatarUrl);
+    }
+}
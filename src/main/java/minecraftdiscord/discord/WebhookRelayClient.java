@@ -0,0 +1,182 @@
+package minecraftdiscord.discord;
+
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * チャンネルのWebhookでメッセージを送る（{@link DiscordRelayQueue} の送信先）
+ *
+ * 複数のWebhookを順番に使い、応答のレート制限ヘッダーから各Webhookが次に使える時刻を記録して、
+ * 使えるものがない場合は最も早く使えるようになるまで待つ。
+ * 接続はHttpClientが保持して使い回す。
+ */
+public final class WebhookRelayClient implements DiscordRelayQueue.Sink {
+
+    // 429を受けた場合に別のWebhookで送り直す回数
+    private static final int MAX_ATTEMPTS = 3;
+
+    // Webhookの名前に含めるとDiscordが400で拒否する語（大文字小文字を区別しない）
+    private static final String[] RESERVED_USERNAME_WORDS = {"discord", "clyde"};
+
+    private static final class Webhook {
+        private final URI uri;
+        // この時刻（System.currentTimeMillis）まではレート制限で使えない
+        private volatile long availableAtMillis;
+
+        private Webhook(URI uri) {
+            this.uri = uri;
+        }
+    }
+
+    private final Logger logger;
+    private final Duration timeout;
+    private final HttpClient client;
+    private final List<Webhook> webhooks;
+
+    // 次に使うWebhookの位置（送信は DiscordRelayQueue が1件ずつ行う）
+    private int next;
+
+    public WebhookRelayClient(Logger logger, List<String> webhookUrls, Duration timeout) {
+        this.logger = logger;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+        this.webhooks = webhookUrls.stream()
+                .map(url -> new Webhook(URI.create(url)))
+                .collect(Collectors.toList());
+        if (webhooks.isEmpty()) {
+            throw new IllegalArgumentException("WebhookのURLが設定されていません");
+        }
+    }
+
+    @Override
+    public CompletableFuture<?> send(RelayMessage message) {
+        return send(body(message), 1);
+    }
+
+    private CompletableFuture<Void> send(String body, int attempt) {
+        Webhook webhook = choose();
+        long waitMillis = webhook.availableAtMillis - System.currentTimeMillis();
+        Executor executor = waitMillis > 0
+                ? CompletableFuture.delayedExecutor(waitMillis, TimeUnit.MILLISECONDS)
+                : Runnable::run;
+
+        return CompletableFuture.supplyAsync(() -> request(webhook, body), executor)
+                .thenCompose(request -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString()))
+                .thenCompose(response -> {
+                    updateRateLimit(webhook, response);
+
+                    int status = response.statusCode();
+                    if (status / 100 == 2) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if (status == 429 && attempt < MAX_ATTEMPTS) {
+                        return send(body, attempt + 1);
+                    }
+                    return CompletableFuture.failedFuture(
+                            new IOException("Webhookへの送信に失敗しました（HTTP " + status + "）: " + response.body()));
+                });
+    }
+
+    // 順番に見て最初に使えるWebhook（すべて制限中なら最も早く使えるようになるもの）
+    private Webhook choose() {
+        long now = System.currentTimeMillis();
+        Webhook earliest = null;
+        for (int i = 0; i < webhooks.size(); i++) {
+            Webhook webhook = webhooks.get((next + i) % webhooks.size());
+            if (webhook.availableAtMillis <= now) {
+                next = (next + i + 1) % webhooks.size();
+                return webhook;
+            }
+            if (earliest == null || webhook.availableAtMillis < earliest.availableAtMillis) {
+                earliest = webhook;
+            }
+        }
+        return earliest;
+    }
+
+    private HttpRequest request(Webhook webhook, String body) {
+        return HttpRequest.newBuilder(webhook.uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    /**
+     * 残り回数が0になった、または429を受けた場合は、解除までそのWebhookを使わない
+     *
+     * X-RateLimit-Remaining / X-RateLimit-Reset-After（秒）と、429の場合は Retry-After（秒）を見る。
+     */
+    private void updateRateLimit(Webhook webhook, HttpResponse<String> response) {
+        long now = System.currentTimeMillis();
+        if (response.statusCode() == 429) {
+            double retryAfter = parseSeconds(response.headers().firstValue("Retry-After").orElse(null));
+            if (retryAfter <= 0) {
+                retryAfter = parseSeconds(response.headers().firstValue("X-RateLimit-Reset-After").orElse(null));
+            }
+            webhook.availableAtMillis = now + Math.max(1, (long) (retryAfter * 1000));
+            logger.warning("Webhookがレート制限を受けました（" + retryAfter + "秒）");
+            return;
+        }
+
+        String remaining = response.headers().firstValue("X-RateLimit-Remaining").orElse(null);
+        double resetAfter = parseSeconds(response.headers().firstValue("X-RateLimit-Reset-After").orElse(null));
+        if ("0".equals(remaining) && resetAfter > 0) {
+            webhook.availableAtMillis = now + (long) (resetAfter * 1000);
+        }
+    }
+
+    private static double parseSeconds(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Webhookの送信者名として使えるかどうか（使えない名前はDiscordが400で拒否する）
+     */
+    public static boolean isUsableUsername(String username) {
+        String lower = username.toLowerCase(Locale.ROOT);
+        for (String word : RESERVED_USERNAME_WORDS) {
+            if (lower.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // チャットに含まれるメンションで通知が飛ばないようにする（使えない名前の場合はWebhookの既定の名前で送る）
+    private static String body(RelayMessage message) {
+        DataObject json = DataObject.empty()
+                .put("content", message.getContent())
+                .put("allowed_mentions", DataObject.empty().put("parse", DataArray.empty()));
+        if (message.getUsername() != null && isUsableUsername(message.getUsername())) {
+            json.put("username", message.getUsername());
+        }
+        if (message.getAvatarUrl() != null) {
+            json.put("avatar_url", message.getAvatarUrl());
+        }
+        return json.toString();
+    }
+}
@@ -2,14 +2,23 @@ package minecraftdiscord.discord.commands;
 
 import minecraftdiscord.MinecraftDiscordPlugin;
 import minecraftdiscord.database.DatabaseManager;
-import minecraftdiscord.database.PlayerData;
+import minecraftdiscord.leaderboard.LeaderboardEngine;
+import minecraftdiscord.leaderboard.PlayerRank;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import org.bukkit.entity.EntityType;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-public class CountCommand extends ListenerAdapter {
+public class CountCommand implements SlashCommand {
+
+    // 内訳に表示するモブの種類の最大数
+    private static final int MAX_BREAKDOWN_LINES = 15;
 
     private final MinecraftDiscordPlugin plugin;
 
@@ -18,40 +27,98 @@ public class CountCommand extends ListenerAdapter {
     }
 
     @Override
-    public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-        if (!event.getName().equals("count")) return;
-
-        event.deferReply().queue();
+    public String getName() {
+        return "count";
+    }
 
+    @Override
+    public CompletableFuture<?> handle(SlashCommandInteractionEvent event) {
         String discordId = event.getUser().getId();
+        boolean showRank = event.getOption("rank", false, OptionMapping::getAsBoolean);
+        boolean showBreakdown = event.getOption("breakdown", false, OptionMapping::getAsBoolean);
         DatabaseManager dbManager = plugin.getDatabaseManager();
 
         // Discord IDからMinecraft UUIDを取得
-        String minecraftUuid = dbManager.getMinecraftUuidByDiscordId(discordId);
+        return dbManager.getMinecraftUuidByDiscordId(discordId).thenCompose(minecraftUuid -> {
+            if (minecraftUuid == null) {
+                event.getHook().editOriginal("あなたはMinecraftアカウントと連携されていません。`/regist`コマンドで連携してください。").queue();
+                return CompletableFuture.completedFuture(null);
+            }
 
-        if (minecraftUuid == null) {
-            event.getHook().editOriginal("あなたはMinecraftアカウントと連携されていません。`/regist`コマンドで連携してください。").queue();
-            return;
+            // プレイヤーの統計データを取得（オンライン中はメモリ上の値を使う）
+            return plugin.getLiveStats().getStats(minecraftUuid).thenAccept(playerData -> {
+                if (playerData == null) {
+                    event.getHook().editOriginal("統計データの取得に失敗しました。もう一度お試しください。").queue();
+                    return;
+                }
+
+                // 統計情報を表示
+                EmbedBuilder embed = new EmbedBuilder();
+                embed.setTitle(playerData.getMinecraftName() + "の統計情報");
+                embed.setColor(Color.GREEN);
+                embed.addField("敵を倒した回数", String.valueOf(playerData.getKills()), true);
+                embed.addField("死亡回数", String.valueOf(playerData.getDeaths()), true);
+                embed.addField("移動総距離", playerData.getFormattedDistance() + "ブロック", true);
+                embed.addField("本日の移動距離", playerData.getFormattedDailyDistance() + "ブロック", true);
+
+                // 倒した敵の種類ごとの内訳を表示
+                if (showBreakdown) {
+                    embed.addField("倒した敵の内訳", formatKillBreakdown(playerData.getKillsByType()), false);
+                }
+
+                // ランキングでの順位を表示
+                if (showRank) {
+                    addRankFields(embed, minecraftUuid);
+                }
+                embed.setFooter("統計情報 | " + java.time.LocalDate.now(), null);
+
+                event.getHook().editOriginalEmbeds(embed.build()).queue();
+            });
+        });
+    }
+
+    // キル数の多い順に並べ、フィールドの文字数制限に収まる分だけ表示する
+    private String formatKillBreakdown(Map<EntityType, Integer> killsByType) {
+        if (killsByType.isEmpty()) {
+            return "まだ敵を倒していません。";
         }
 
-        // プレイヤーの統計データを取得
-        PlayerData playerData = dbManager.getPlayerStats(minecraftUuid);
+        List<Map.Entry<EntityType, Integer>> sorted = new ArrayList<>(killsByType.entrySet());
+        sorted.sort(Map.Entry.<EntityType, Integer>comparingByValue().reversed());
+
+        StringBuilder breakdown = new StringBuilder();
+        int shown = 0;
+        for (Map.Entry<EntityType, Integer> entry : sorted) {
+            String line = entry.getKey().name().toLowerCase() + ": " + entry.getValue() + "\n";
+            if (shown >= MAX_BREAKDOWN_LINES || breakdown.length() + line.length() > 900) {
+                break;
+            }
+            breakdown.append(line);
+            shown++;
+        }
+        if (shown < sorted.size()) {
+            breakdown.append("ほか").append(sorted.size() - shown).append("種類");
+        }
+        return breakdown.toString();
+    }
 
-        if (playerData == null) {
-            event.getHook().editOriginal("統計データの取得に失敗しました。もう一度お試しください。").queue();
+    private void addRankFields(EmbedBuilder embed, String minecraftUuid) {
+        LeaderboardEngine leaderboardEngine = plugin.getLeaderboardEngine();
+        if (!leaderboardEngine.isLoaded()) {
+            embed.addField("ランキング", "順位は準備中です。", false);
             return;
         }
 
-        // 統計情報を表示
-        EmbedBuilder embed = new EmbedBuilder();
-        embed.setTitle(playerData.getMinecraftName() + "の統計情報");
-        embed.setColor(Color.GREEN);
-        embed.addField("敵を倒した回数", String.valueOf(playerData.getKills()), true);
-        embed.addField("死亡回数", String.valueOf(playerData.getDeaths()), true);
-        embed.addField("移動総距離", playerData.getFormattedDistance() + "ブロック", true);
-        embed.addField("本日の移動距離", playerData.getFormattedDailyDistance() + "ブロック", true);
-        embed.setFooter("統計情報 | " + java.time.LocalDate.now(), null);
-
-        event.getHook().editOriginalEmbeds(embed.build()).queue();
+        for (String period : LeaderboardEngine.PERIODS) {
+            String periodStr = period.equals("weekly") ? "週間" : "月間";
+            PlayerRank killRank = leaderboardEngine.getRank(minecraftUuid, "kill", period);
+            PlayerRank distanceRank = leaderboardEngine.getRank(minecraftUuid, "distance", period);
+            if (killRank != null) {
+                embed.addField(periodStr + "キル数順位", killRank.getFormattedRank(), true);
+            }
+            if (distanceRank != null) {
+                embed.addField(periodStr + "移動距離順位", distanceRank.getFormattedRank(), true);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package minecraftdiscord.discord.commands;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.DatabaseManager;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+
+import java.awt.Color;
+import java.util.concurrent.CompletableFuture;
+
+// Minecraft内の /pos コマンド（minecraftdiscord.commands.PosCommand）と名前が衝突しないようにしている
+public class DiscordPosCommand implements SlashCommand {
+
+    private final MinecraftDiscordPlugin plugin;
+
+    public DiscordPosCommand(MinecraftDiscordPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getName() {
+        return "pos";
+    }
+
+    @Override
+    public CompletableFuture<?> handle(SlashCommandInteractionEvent event) {
+        String discordId = event.getUser().getId();
+        DatabaseManager dbManager = plugin.getDatabaseManager();
+
+        // Discord IDからMinecraft UUIDを取得
+        return dbManager.getMinecraftUuidByDiscordId(discordId).thenCompose(minecraftUuid -> {
+            if (minecraftUuid == null) {
+                event.getHook().editOriginal("あなたはMinecraftアカウントと連携されていません。`/regist`コマンドで連携してください。").queue();
+                return CompletableFuture.completedFuture(null);
+            }
+
+            // 座標は一定距離以上移動したときに保存されるため、オンライン中は少し前の位置になることがある
+            return dbManager.getLastPosition(minecraftUuid).thenAccept(position -> {
+                if (position == null) {
+                    event.getHook().editOriginal("座標の記録がありません。サーバーに参加してから試してください。").queue();
+                    return;
+                }
+
+                EmbedBuilder embed = new EmbedBuilder();
+                embed.setTitle("最後に記録された座標");
+                embed.setColor(Color.CYAN);
+                embed.addField("X", String.format("%.1f", position.getX()), true);
+                embed.addField("Y", String.format("%.1f", position.getY()), true);
+                embed.addField("Z", String.format("%.1f", position.getZ()), true);
+                embed.setFooter("座標情報 | " + java.time.LocalDate.now(), null);
+
+                event.getHook().editOriginalEmbeds(embed.build()).queue();
+            });
+        });
+    }
+}
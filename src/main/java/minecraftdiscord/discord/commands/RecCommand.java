@@ -1,15 +1,18 @@
 package minecraftdiscord.discord.commands;
 
 import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.AdvancementDictionary;
+import minecraftdiscord.database.AdvancementRarity;
 import minecraftdiscord.database.DatabaseManager;
-import minecraftdiscord.database.PlayerData;
+import minecraftdiscord.utils.MessageUtils;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
 
 import java.awt.Color;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
 
-public class RecCommand extends ListenerAdapter {
+public class RecCommand implements SlashCommand {
 
     private final MinecraftDiscordPlugin plugin;
 
@@ -18,38 +21,81 @@ public class RecCommand extends ListenerAdapter {
     }
 
     @Override
-    public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-        if (!event.getName().equals("rec")) return;
-
-        event.deferReply().queue();
+    public String getName() {
+        return "rec";
+    }
 
+    @Override
+    public CompletableFuture<?> handle(SlashCommandInteractionEvent event) {
         String discordId = event.getUser().getId();
         DatabaseManager dbManager = plugin.getDatabaseManager();
 
         // Discord IDからMinecraft UUIDを取得
-        String minecraftUuid = dbManager.getMinecraftUuidByDiscordId(discordId);
+        return dbManager.getMinecraftUuidByDiscordId(discordId).thenCompose(minecraftUuid -> {
+            if (minecraftUuid == null) {
+                event.getHook().editOriginal("あなたはMinecraftアカウントと連携されていません。`/regist`コマンドで連携してください。").queue();
+                return CompletableFuture.completedFuture(null);
+            }
 
-        if (minecraftUuid == null) {
-            event.getHook().editOriginal("あなたはMinecraftアカウントと連携されていません。`/regist`コマンドで連携してください。").queue();
-            return;
-        }
+            // プレイヤーの統計データ（オンライン中はメモリ上の値を使う）と解除済みの進捗を取得
+            CompletableFuture<BitSet> unlockedFuture = dbManager.getUnlockedAdvancements(minecraftUuid);
+            return plugin.getLiveStats().getStats(minecraftUuid).thenCombine(unlockedFuture, (playerData, unlockedSet) -> {
+                if (playerData == null) {
+                    event.getHook().editOriginal("統計データの取得に失敗しました。もう一度お試しください。").queue();
+                    return null;
+                }
+
+                // 実績情報を表示
+                EmbedBuilder embed = new EmbedBuilder();
+                embed.setTitle(playerData.getMinecraftName() + "の実績");
+                embed.setColor(Color.YELLOW);
+                embed.addField("獲得実績数", String.valueOf(playerData.getAchievementsCount()), false);
 
-        // プレイヤーの統計データを取得
-        PlayerData playerData = dbManager.getPlayerStats(minecraftUuid);
+                // 解除済み・未解除の進捗の一覧
+                AdvancementDictionary dictionary = plugin.getAdvancementDictionary().getNow(null);
+                if (dictionary == null) {
+                    embed.addField("進捗", "進捗の一覧は準備中です。", false);
+                } else {
+                    AdvancementRarity rarity = dbManager.getAdvancementRarity();
+                    BitSet unlocked = dictionary.unlocked(unlockedSet);
+                    BitSet missing = dictionary.missing(unlockedSet);
+                    embed.addField("解除済みの進捗", unlocked.cardinality() + " / " + dictionary.trackedCount(), false);
+                    MessageUtils.addFieldSafely(embed, "解除済み", formatAdvancements(dictionary, rarity, unlocked), false);
+                    MessageUtils.addFieldSafely(embed, "未解除", formatAdvancements(dictionary, rarity, missing), false);
+                }
+                embed.setFooter("統計情報 | " + java.time.LocalDate.now(), null);
 
-        if (playerData == null) {
-            event.getHook().editOriginal("統計データの取得に失敗しました。もう一度お試しください。").queue();
-            return;
+                event.getHook().editOriginalEmbeds(embed.build()).queue();
+                return null;
+            });
+        });
+    }
+
+    // 進捗の表示名と登録プレイヤーの解除率を並べる（埋め込みフィールド1つに収まるよう、長い場合は進捗単位で省略する）
+    private String formatAdvancements(AdvancementDictionary dictionary, AdvancementRarity rarity, BitSet ids) {
+        if (ids.isEmpty()) {
+            return "なし";
         }
 
-        // 実績情報を表示
-        EmbedBuilder embed = new EmbedBuilder();
-        embed.setTitle(playerData.getMinecraftName() + "の実績");
-        embed.setColor(Color.YELLOW);
-        embed.addField("獲得実績数", String.valueOf(playerData.getAchievementsCount()), false);
-        // 注：実績の詳細リストが必要な場合はここで追加
-        embed.setFooter("統計情報 | " + java.time.LocalDate.now(), null);
+        // 「ほか N件」を付けても上限を超えないよう、その分を空けておく
+        int maxLength = MessageUtils.MAX_EMBED_FIELD_VALUE_LENGTH - (" ほか" + ids.cardinality() + "件").length();
 
-        event.getHook().editOriginalEmbeds(embed.build()).queue();
+        StringBuilder list = new StringBuilder();
+        int shown = 0;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            String title = String.format("%s (%.1f%%)", dictionary.titleOf(id), rarity.getUnlockedPercent(id));
+            if (list.length() + (list.length() > 0 ? 1 : 0) + title.length() > maxLength) {
+                break;
+            }
+            if (list.length() > 0) {
+                list.append("、");
+            }
+            list.append(title);
+            shown++;
+        }
+        if (shown < ids.cardinality()) {
+            list.append(" ほか").append(ids.cardinality() - shown).append("件");
+        }
+        return list.toString();
     }
 }
\ No newline at end of file
@@ -2,14 +2,13 @@ package minecraftdiscord.discord.commands;
 
 import minecraftdiscord.MinecraftDiscordPlugin;
 import minecraftdiscord.database.DatabaseManager;
+import minecraftdiscord.profile.PlayerNameResolver;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
-public class RegistCommand extends ListenerAdapter {
+public class RegistCommand implements SlashCommand {
 
     private final MinecraftDiscordPlugin plugin;
 
@@ -18,36 +17,38 @@ public class RegistCommand extends ListenerAdapter {
     }
 
     @Override
-    public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-        if (!event.getName().equals("regist")) return;
-
-        // コマンドの処理を遅延させる（Discord APIの制限による）
-        event.deferReply().queue();
+    public String getName() {
+        return "regist";
+    }
 
+    @Override
+    public CompletableFuture<?> handle(SlashCommandInteractionEvent event) {
         String minecraftId = event.getOption("minecraft_id").getAsString();
         String discordId = event.getUser().getId();
 
-        // Bukkitの処理はメインスレッドで実行する必要がある
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            // MinecraftのプレイヤーUUIDを検索
-            OfflinePlayer player = Bukkit.getOfflinePlayer(minecraftId);
-
-            if (player == null || !player.hasPlayedBefore()) {
+        // MinecraftのプレイヤーUUIDを検索（メインスレッドは使わない）
+        PlayerNameResolver resolver = plugin.getNameResolver();
+        return resolver.resolve(minecraftId).thenCompose(profile -> {
+            if (profile == null || !resolver.hasPlayedBefore(profile.getUuid())) {
                 // プレイヤーが見つからない場合
                 event.getHook().editOriginal("プレイヤー「" + minecraftId + "」は見つかりませんでした。正確なMinecraft IDを入力してください。").queue();
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             // データベースに登録
-            UUID uuid = player.getUniqueId();
+            UUID uuid = profile.getUuid();
             DatabaseManager dbManager = plugin.getDatabaseManager();
-            boolean success = dbManager.registerPlayer(uuid.toString(), player.getName(), discordId);
-
-            if (success) {
-                event.getHook().editOriginal("**登録成功！**\nMinecraft ID: " + player.getName() + " を Discord ID: " + event.getUser().getAsTag() + " に連携しました！").queue();
-            } else {
-                event.getHook().editOriginal("登録に失敗しました。もう一度お試しください。").queue();
-            }
+            String playerName = profile.getName();
+            return dbManager.registerPlayer(uuid, playerName, discordId).thenAccept(success -> {
+                if (success) {
+                    // ランキングに新しい登録プレイヤーを反映する
+                    plugin.getLeaderboardEngine().reload();
+
+                    event.getHook().editOriginal("**登録成功！**\nMinecraft ID: " + playerName + " を Discord ID: " + event.getUser().getAsTag() + " に連携しました！").queue();
+                } else {
+                    event.getHook().editOriginal("登録に失敗しました。もう一度お試しください。").queue();
+                }
+            });
         });
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package minecraftdiscord.discord.commands;
+
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link minecraftdiscord.discord.CommandRouter} から呼ばれるスラッシュコマンドの処理
+ *
+ * 呼び出し時には応答の遅延（deferReply）は送信済みで、結果は event.getHook() で返す。
+ * 戻り値は応答を送った時点で完了させる（処理時間とタイムアウトの計測に使う）。
+ */
+public interface SlashCommand {
+
+    String getName();
+
+    CompletableFuture<?> handle(SlashCommandInteractionEvent event);
+}
@@ -1,16 +1,22 @@
-package com.example.minecraftdiscord.discord.commands;
+package minecraftdiscord.discord.commands;
 
-import com.example.minecraftdiscord.MinecraftDiscordPlugin;
-import com.example.minecraftdiscord.database.DatabaseManager;
-import com.example.minecraftdiscord.database.PlayerData;
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.DatabaseManager;
+import minecraftdiscord.database.PlayerData;
+import minecraftdiscord.leaderboard.LeaderboardEngine;
+import minecraftdiscord.leaderboard.PlayerRank;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import org.bukkit.entity.EntityType;
 
 import java.awt.Color;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-public class TopCommand extends ListenerAdapter {
+public class TopCommand implements SlashCommand {
 
     private final MinecraftDiscordPlugin plugin;
 
@@ -19,23 +25,112 @@ public class TopCommand extends ListenerAdapter {
     }
 
     @Override
-    public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-        if (!event.getName().equals("top")) return;
-
-        event.deferReply().queue();
+    public String getName() {
+        return "top";
+    }
 
+    @Override
+    public CompletableFuture<?> handle(SlashCommandInteractionEvent event) {
         String type = event.getOption("type").getAsString().toLowerCase();
-        String period = event.getOption("period").getAsString().toLowerCase();
+        String period = event.getOption("period", "weekly", OptionMapping::getAsString).toLowerCase();
+        String fromOption = event.getOption("from", null, OptionMapping::getAsString);
+        String toOption = event.getOption("to", null, OptionMapping::getAsString);
 
         // タイプと期間の検証
         if (!isValidType(type) || !isValidPeriod(period)) {
-            event.getHook().editOriginal("無効なパラメータです。タイプは `kill`, `distance`, `achievements` のいずれか、期間は `weekly` または `monthly` を指定してください。").queue();
-            return;
+            event.getHook().editOriginal("無効なパラメータです。タイプは `kill`, `distance`, `achievements`, `mob` のいずれか、期間は `daily`, `weekly`, `monthly`, `alltime` のいずれかを指定してください。").queue();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // モブ別ランキングの場合はモブの種類を検証
+        EntityType mobType = null;
+        if (type.equals("mob")) {
+            mobType = parseMobType(event.getOption("mob", null, OptionMapping::getAsString));
+            if (mobType == null) {
+                event.getHook().editOriginal("`mob` にモブの種類を指定してください（例: `zombie`, `creeper`）。").queue();
+                return CompletableFuture.completedFuture(null);
+            }
         }
 
         DatabaseManager dbManager = plugin.getDatabaseManager();
-        List<PlayerData> topPlayers = dbManager.getTopPlayers(type, period);
 
+        // 日付指定または日間・全期間は累積統計から、モブ別は日ごとのキル数から集計する
+        if (mobType != null || fromOption != null || toOption != null || period.equals("daily") || period.equals("alltime")) {
+            LocalDate today = LocalDate.now();
+            LocalDate from;
+            LocalDate to;
+            String title;
+            try {
+                if (fromOption != null || toOption != null) {
+                    from = fromOption != null ? LocalDate.parse(fromOption) : null;
+                    to = toOption != null ? LocalDate.parse(toOption) : today;
+                    title = (from != null ? from.toString() : "") + "〜" + to;
+                } else if (period.equals("daily")) {
+                    from = today;
+                    to = today;
+                    title = "日間";
+                } else if (period.equals("alltime")) {
+                    from = null;
+                    to = today;
+                    title = "全期間";
+                } else {
+                    from = DatabaseManager.periodStart(period);
+                    to = today;
+                    title = period.equals("weekly") ? "週間" : "月間";
+                }
+            } catch (DateTimeParseException e) {
+                event.getHook().editOriginal("日付は `2026-06-01` の形式で指定してください。").queue();
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (from != null && from.isAfter(to)) {
+                event.getHook().editOriginal("開始日は終了日以前の日付を指定してください。").queue();
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (mobType != null) {
+                String mobTitle = title + " " + mobType.name().toLowerCase() + "の";
+                return dbManager.getTopPlayersByMob(mobType, from, to)
+                        .thenAccept(topPlayers -> replyWithRanking(event, type, mobTitle, topPlayers, null));
+            }
+
+            return dbManager.getTopPlayersInRange(type, from, to)
+                    .thenAccept(topPlayers -> replyWithRanking(event, type, title, topPlayers, null));
+        }
+
+        String periodTitle = period.equals("weekly") ? "週間" : "月間";
+        boolean showOwnRank = event.getOption("me", false, OptionMapping::getAsBoolean);
+
+        // メモリ上のランキングから取得（読み込み前の場合のみデータベースに問い合わせる）
+        LeaderboardEngine leaderboardEngine = plugin.getLeaderboardEngine();
+        CompletableFuture<List<PlayerData>> topPlayersFuture = leaderboardEngine.isLoaded()
+                ? CompletableFuture.completedFuture(leaderboardEngine.getTopPlayers(type, period, 10))
+                : dbManager.getTopPlayers(type, period);
+
+        if (!showOwnRank) {
+            return topPlayersFuture.thenAccept(topPlayers -> replyWithRanking(event, type, periodTitle, topPlayers, null));
+        }
+
+        // 自分の順位も表示する
+        return dbManager.getMinecraftUuidByDiscordId(event.getUser().getId())
+                .thenCombine(topPlayersFuture, (minecraftUuid, topPlayers) -> {
+                    String ownRank;
+                    if (minecraftUuid == null) {
+                        ownRank = "あなたはMinecraftアカウントと連携されていません。";
+                    } else if (!leaderboardEngine.isLoaded()) {
+                        ownRank = "順位は準備中です。しばらくしてからお試しください。";
+                    } else {
+                        PlayerRank rank = leaderboardEngine.getRank(minecraftUuid, type, period);
+                        ownRank = rank == null
+                                ? "順位を取得できませんでした。"
+                                : "**" + rank.getFormattedRank() + "**";
+                    }
+                    replyWithRanking(event, type, periodTitle, topPlayers, ownRank);
+                    return null;
+                });
+    }
+
+    private void replyWithRanking(SlashCommandInteractionEvent event, String type, String periodTitle, List<PlayerData> topPlayers, String ownRank) {
         if (topPlayers.isEmpty()) {
             event.getHook().editOriginal("ランキングデータがありません。もう少し待ってから試してください。").queue();
             return;
@@ -43,7 +138,7 @@ public class TopCommand extends ListenerAdapter {
 
         // ランキング表示
         EmbedBuilder embed = new EmbedBuilder();
-        embed.setTitle(getJapaneseTitle(type, period));
+        embed.setTitle(getJapaneseTitle(type, periodTitle));
         embed.setColor(getColorByType(type));
 
         StringBuilder description = new StringBuilder();
@@ -56,20 +151,34 @@ public class TopCommand extends ListenerAdapter {
         }
 
         embed.setDescription(description.toString());
+        if (ownRank != null) {
+            embed.addField("あなたの順位", ownRank, false);
+        }
         embed.setFooter("ランキング | " + java.time.LocalDate.now(), null);
 
         event.getHook().editOriginalEmbeds(embed.build()).queue();
     }
 
     private boolean isValidType(String type) {
-        return type.equals("kill") || type.equals("distance") || type.equals("achievements");
+        return type.equals("kill") || type.equals("distance") || type.equals("achievements") || type.equals("mob");
+    }
+
+    private EntityType parseMobType(String mob) {
+        if (mob == null) {
+            return null;
+        }
+        try {
+            return EntityType.valueOf(mob.trim().toUpperCase().replace(' ', '_'));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     private boolean isValidPeriod(String period) {
-        return period.equals("weekly") || period.equals("monthly");
+        return period.equals("daily") || period.equals("weekly") || period.equals("monthly") || period.equals("alltime");
     }
 
-    private String getJapaneseTitle(String type, String period) {
+    private String getJapaneseTitle(String type, String periodTitle) {
         String typeStr;
         switch (type) {
             case "kill":
@@ -81,13 +190,14 @@ public class TopCommand extends ListenerAdapter {
             case "achievements":
                 typeStr = "実績獲得数";
                 break;
+            case "mob":
+                typeStr = "討伐数";
+                break;
             default:
                 typeStr = "";
         }
 
-        String periodStr = period.equals("weekly") ? "週間" : "月間";
-
-        return periodStr + typeStr + "ランキング";
+        return periodTitle + typeStr + "ランキング";
     }
 
     private Color getColorByType(String type) {
@@ -98,6 +208,8 @@ public class TopCommand extends ListenerAdapter {
                 return Color.BLUE;
             case "achievements":
                 return Color.YELLOW;
+            case "mob":
+                return Color.ORANGE;
             default:
                 return Color.GREEN;
         }
@@ -107,6 +219,8 @@ public class TopCommand extends ListenerAdapter {
         switch (type) {
             case "kill":
                 return player.getKills() + "キル";
+            case "mob":
+                return player.getKills() + "体";
             case "distance":
                 return player.getFormattedDistance() + "ブロック";
             case "achievements":
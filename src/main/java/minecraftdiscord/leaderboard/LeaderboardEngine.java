@@ -0,0 +1,161 @@
+package minecraftdiscord.leaderboard;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.PlayerData;
+import minecraftdiscord.database.StatDelta;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * /top 用のランキングをメモリ上に保持し、I/Oなしで上位を返す
+ *
+ * 起動時と日付の変わり目にデータベースの集計から作り直し、その間は統計の書き込みごとに差分で更新する。
+ */
+public class LeaderboardEngine {
+
+    public static final String[] TYPES = {"kill", "distance", "achievements"};
+    public static final String[] PERIODS = {"weekly", "monthly"};
+
+    private final MinecraftDiscordPlugin plugin;
+    private final Logger logger;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, RankingIndex> indexes = new HashMap<>();
+    private Map<String, String> playerNames = new HashMap<>();
+    private volatile boolean loaded;
+
+    public LeaderboardEngine(MinecraftDiscordPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+
+        for (String type : TYPES) {
+            for (String period : PERIODS) {
+                indexes.put(key(type, period), new RankingIndex());
+            }
+        }
+    }
+
+    private static String key(String type, String period) {
+        return type + ":" + period;
+    }
+
+    // データベースの集計からランキングを作り直す
+    public CompletableFuture<Void> reload() {
+        return plugin.getDatabaseManager().loadLeaderboardRollups(this::rebuild);
+    }
+
+    private void rebuild(Map<String, String> names, Map<String, List<PlayerData>> rollupsByPeriod) {
+        lock.writeLock().lock();
+        try {
+            playerNames = names;
+
+            for (String period : PERIODS) {
+                RankingIndex kills = indexes.get(key("kill", period));
+                RankingIndex distance = indexes.get(key("distance", period));
+                RankingIndex achievements = indexes.get(key("achievements", period));
+                kills.clear();
+                distance.clear();
+                achievements.clear();
+
+                for (PlayerData data : rollupsByPeriod.getOrDefault(period, Collections.emptyList())) {
+                    kills.set(data.getMinecraftUuid(), data.getKills());
+                    distance.set(data.getMinecraftUuid(), data.getDistanceTraveled());
+                    achievements.set(data.getMinecraftUuid(), data.getAchievementsCount());
+                }
+            }
+
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("ランキングを読み込みました。登録プレイヤー数: " + names.size());
+    }
+
+    // 書き込まれた統計差分をランキングに反映する（登録済みプレイヤーのみ）
+    public void applyDeltas(Collection<StatDelta> deltas) {
+        lock.writeLock().lock();
+        try {
+            for (StatDelta delta : deltas) {
+                String uuid = delta.getPlayerUuid().toString();
+                if (!playerNames.containsKey(uuid)) {
+                    continue;
+                }
+
+                for (String period : PERIODS) {
+                    indexes.get(key("kill", period)).add(uuid, delta.getKills());
+                    indexes.get(key("distance", period)).add(uuid, delta.getDistance());
+                    indexes.get(key("achievements", period)).add(uuid, delta.getNewAchievements());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 上位のプレイヤーを取得（データベースへのアクセスなし）
+    public List<PlayerData> getTopPlayers(String type, String period, int limit) {
+        List<PlayerData> playerDataList = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            RankingIndex index = indexes.get(key(type.toLowerCase(), period.toLowerCase()));
+            if (index == null) {
+                return playerDataList;
+            }
+
+            for (RankingIndex.Entry entry : index.top(limit)) {
+                PlayerData data = new PlayerData();
+                data.setMinecraftUuid(entry.uuid);
+                data.setMinecraftName(playerNames.get(entry.uuid));
+
+                switch (type.toLowerCase()) {
+                    case "kill":
+                        data.setKills((int) entry.score);
+                        break;
+                    case "distance":
+                        data.setDistanceTraveled(entry.score);
+                        break;
+                    case "achievements":
+                        data.setAchievementsCount((int) entry.score);
+                        break;
+                }
+
+                playerDataList.add(data);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return playerDataList;
+    }
+
+    /**
+     * 登録済みプレイヤーの順位を取得する（O(log n)）。まだスコアがないプレイヤーは最下位タイとして扱う
+     */
+    public PlayerRank getRank(String uuid, String type, String period) {
+        lock.readLock().lock();
+        try {
+            RankingIndex index = indexes.get(key(type.toLowerCase(), period.toLowerCase()));
+            if (index == null || !playerNames.containsKey(uuid)) {
+                return null;
+            }
+
+            int totalPlayers = playerNames.size();
+            int rank = index.rankOf(uuid);
+            if (rank == 0) {
+                return new PlayerRank(index.size() + 1, totalPlayers, 0);
+            }
+            return new PlayerRank(rank, totalPlayers, index.get(uuid).score);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+}
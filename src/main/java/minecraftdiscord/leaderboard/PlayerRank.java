@@ -0,0 +1,42 @@
+package minecraftdiscord.leaderboard;
+
+/**
+ * 1人のプレイヤーのランキング上の位置（「M人中N位」）
+ */
+public class PlayerRank {
+
+    private final int rank;
+    private final int totalPlayers;
+    private final double score;
+
+    public PlayerRank(int rank, int totalPlayers, double score) {
+        this.rank = rank;
+        this.totalPlayers = totalPlayers;
+        this.score = score;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getTotalPlayers() {
+        return totalPlayers;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    // 上位何%か（1位は0%に近く、最下位は100%）
+    public double getTopPercent() {
+        if (totalPlayers == 0) {
+            return 100;
+        }
+        return rank * 100.0 / totalPlayers;
+    }
+
+    // 「M人中N位（上位X%）」の形式
+    public String getFormattedRank() {
+        return String.format("%d人中%d位（上位%.1f%%）", totalPlayers, rank, getTopPercent());
+    }
+}
@@ -0,0 +1,154 @@
+package minecraftdiscord.leaderboard;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 部分木のサイズを持つTreap（順序統計木）
+ *
+ * 挿入・削除・順位の取得がすべて期待O(log n)で行える。スレッドセーフではない。
+ */
+final class RankTree<T> {
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        int size = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(T value) {
+            this.value = value;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    private static final class Split<T> {
+        Node<T> less;
+        Node<T> greaterOrEqual;
+    }
+
+    private final Comparator<T> order;
+    private Node<T> root;
+
+    RankTree(Comparator<T> order) {
+        this.order = order;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    void insert(T value) {
+        Split<T> parts = new Split<>();
+        split(root, value, parts);
+        root = merge(merge(parts.less, new Node<>(value)), parts.greaterOrEqual);
+    }
+
+    void remove(T value) {
+        root = remove(root, value);
+    }
+
+    // valueより前にある要素の数（0始まりの順位）
+    int rankOf(T value) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int compare = order.compare(value, node.value);
+            if (compare <= 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    // 先頭からlimit件を順番に取り出す
+    void collectFirst(int limit, List<T> out) {
+        collectFirst(root, limit, out);
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    private void collectFirst(Node<T> node, int limit, List<T> out) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        collectFirst(node.left, limit, out);
+        if (out.size() < limit) {
+            out.add(node.value);
+            collectFirst(node.right, limit, out);
+        }
+    }
+
+    // valueより小さい部分木と、value以上の部分木に分割する
+    private void split(Node<T> node, T value, Split<T> out) {
+        if (node == null) {
+            out.less = null;
+            out.greaterOrEqual = null;
+            return;
+        }
+
+        if (order.compare(node.value, value) < 0) {
+            split(node.right, value, out);
+            node.right = out.less;
+            update(node);
+            out.less = node;
+        } else {
+            split(node.left, value, out);
+            node.left = out.greaterOrEqual;
+            update(node);
+            out.greaterOrEqual = node;
+        }
+    }
+
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    private Node<T> remove(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+
+        int compare = order.compare(value, node.value);
+        if (compare == 0) {
+            return merge(node.left, node.right);
+        }
+        if (compare < 0) {
+            node.left = remove(node.left, value);
+        } else {
+            node.right = remove(node.right, value);
+        }
+        update(node);
+        return node;
+    }
+
+    private static <T> int size(Node<T> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <T> void update(Node<T> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+}
@@ -0,0 +1,83 @@
+package minecraftdiscord.leaderboard;
+
+import java.util.*;
+
+/**
+ * 1つのランキング（タイプ×期間）をスコアの降順で保持する
+ *
+ * 更新と順位の取得はO(log n)、上位k件の取得はO(log n + k)。スレッドセーフではないので呼び出し側でロックする。
+ */
+class RankingIndex {
+
+    static final class Entry {
+        final String uuid;
+        final double score;
+
+        Entry(String uuid, double score) {
+            this.uuid = uuid;
+            this.score = score;
+        }
+    }
+
+    // スコアの降順、同点はUUID順
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int compare = Double.compare(b.score, a.score);
+        return compare != 0 ? compare : a.uuid.compareTo(b.uuid);
+    };
+
+    private final RankTree<Entry> sorted = new RankTree<>(ORDER);
+    private final Map<String, Entry> byPlayer = new HashMap<>();
+
+    // スコアに差分を加算する
+    void add(String uuid, double delta) {
+        if (delta == 0) {
+            return;
+        }
+
+        Entry current = byPlayer.get(uuid);
+        set(uuid, current == null ? delta : current.score + delta);
+    }
+
+    // スコアを設定する（0以下になったプレイヤーはランキングから外す）
+    void set(String uuid, double score) {
+        Entry current = byPlayer.remove(uuid);
+        if (current != null) {
+            sorted.remove(current);
+        }
+
+        if (score > 0.000001) {
+            Entry entry = new Entry(uuid, score);
+            byPlayer.put(uuid, entry);
+            sorted.insert(entry);
+        }
+    }
+
+    List<Entry> top(int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(limit, sorted.size()));
+        sorted.collectFirst(limit, result);
+        return result;
+    }
+
+    // 1始まりの順位（ランキングに載っていなければ0）。同点のプレイヤーは同じ順位になる
+    int rankOf(String uuid) {
+        Entry entry = byPlayer.get(uuid);
+        if (entry == null) {
+            return 0;
+        }
+        // 自分よりスコアが高いプレイヤーの数 + 1
+        return sorted.rankOf(new Entry("", entry.score)) + 1;
+    }
+
+    Entry get(String uuid) {
+        return byPlayer.get(uuid);
+    }
+
+    int size() {
+        return sorted.size();
+    }
+
+    void clear() {
+        sorted.clear();
+        byPlayer.clear();
+    }
+}
@@ -1,12 +1,15 @@
 package minecraftdiscord.listeners;
 
 import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.AdvancementDictionary;
 import minecraftdiscord.discord.DiscordBot;
+import org.bukkit.advancement.AdvancementDisplay;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerAdvancementDoneEvent;
 
 public class MinecraftChatListener implements Listener {
 
@@ -24,8 +27,32 @@ public class MinecraftChatListener implements Listener {
         // Discordにチャットを送信
         DiscordBot discordBot = plugin.getDiscordBot();
         if (discordBot != null) {
-            String formattedMessage = String.format("**%s**: %s", player.getName(), message);
-            discordBot.sendMessageToDiscord(formattedMessage);
+            discordBot.relayChat(player.getName(), player.getUniqueId(), message);
         }
     }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerAdvancement(PlayerAdvancementDoneEvent event) {
+        if (!plugin.getConfig().getBoolean("messages.announce_advancements", true)) {
+            return;
+        }
+
+        // チャットで告知される進捗だけをDiscordにも流す
+        AdvancementDisplay display = event.getAdvancement().getDisplay();
+        DiscordBot discordBot = plugin.getDiscordBot();
+        if (display == null || !display.shouldAnnounceChat() || discordBot == null) {
+            return;
+        }
+
+        String message = String.format("**%s** が進捗「%s」を達成しました", event.getPlayer().getName(), display.getTitle());
+
+        // 解除率は進捗の辞書ができていれば付ける（このプレイヤーの分は書き込み後に反映される）
+        AdvancementDictionary dictionary = plugin.getAdvancementDictionary().getNow(null);
+        int id = dictionary != null ? dictionary.idOf(event.getAdvancement().getKey()) : -1;
+        if (id >= 0 && plugin.getDatabaseManager().getAdvancementRarity().getRegisteredPlayers() > 0) {
+            message += String.format("（登録プレイヤーの解除率 %.1f%%）",
+                    plugin.getDatabaseManager().getAdvancementRarity().getUnlockedPercent(id));
+        }
+        discordBot.sendMessageToDiscord(message);
+    }
 }
\ No newline at end of file
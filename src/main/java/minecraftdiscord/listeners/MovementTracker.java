@@ -0,0 +1,181 @@
+package minecraftdiscord.listeners;
+
+import minecraftdiscord.database.LiveStats;
+import minecraftdiscord.database.PositionCheckpoint;
+import minecraftdiscord.database.StatBuffer;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * オンライン中のプレイヤーの位置と移動距離を、接続ごとに割り当てたスロット番号の配列で管理する
+ *
+ * 移動イベントごとの処理ではオブジェクトを生成しない。メインスレッドからのみ呼び出す。
+ */
+public final class MovementTracker {
+
+    private final double maxStepSquared;
+    private final double positionThresholdSquared;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+
+    // 空きスロット（スタック）
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+
+    private UUID[] uuids = new UUID[0];
+    private World[] worlds = new World[0];
+    private double[] lastX = new double[0];
+    private double[] lastY = new double[0];
+    private double[] lastZ = new double[0];
+    private double[] savedX = new double[0];
+    private double[] savedY = new double[0];
+    private double[] savedZ = new double[0];
+
+    // 前回保存した座標から閾値以上移動し、まだ保存していないプレイヤー
+    private boolean[] dirty = new boolean[0];
+
+    // まだ統計バッファに渡していない移動距離
+    private double[] pendingDistance = new double[0];
+
+    // 前回統計バッファに移動距離を渡した時刻（日付をまたいだ分を前日と今日に分けるために使う）
+    private long lastDrainMillis = System.currentTimeMillis();
+
+    /**
+     * @param maxStepDistance   これ以上の移動はテレポートと見なして距離に含めない
+     * @param positionThreshold 前回保存した座標からこれ以上移動したら座標を保存対象にする
+     */
+    public MovementTracker(double maxStepDistance, double positionThreshold) {
+        this.maxStepSquared = maxStepDistance * maxStepDistance;
+        this.positionThresholdSquared = positionThreshold * positionThreshold;
+    }
+
+    // 参加したプレイヤーにスロットを割り当てる
+    public void join(UUID uuid, Location location) {
+        Integer existing = slots.get(uuid);
+        int slot = existing != null ? existing : allocateSlot();
+
+        uuids[slot] = uuid;
+        worlds[slot] = location.getWorld();
+        lastX[slot] = savedX[slot] = location.getX();
+        lastY[slot] = savedY[slot] = location.getY();
+        lastZ[slot] = savedZ[slot] = location.getZ();
+        dirty[slot] = false;
+        if (existing == null) {
+            pendingDistance[slot] = 0;
+            slots.put(uuid, slot);
+        }
+    }
+
+    // 移動を記録する（前回保存した座標から閾値以上離れた場合は座標を保存対象にする）
+    public void move(UUID uuid, World world, double x, double y, double z) {
+        Integer boxedSlot = slots.get(uuid);
+        if (boxedSlot == null) {
+            return;
+        }
+        int slot = boxedSlot;
+
+        // 同じワールドの場合のみ距離を計算し、大きすぎる場合はテレポートと判断して無視
+        if (worlds[slot] == world) {
+            double dx = x - lastX[slot];
+            double dy = y - lastY[slot];
+            double dz = z - lastZ[slot];
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (distanceSquared > 0 && distanceSquared < maxStepSquared) {
+                pendingDistance[slot] += Math.sqrt(distanceSquared);
+            }
+        }
+
+        worlds[slot] = world;
+        lastX[slot] = x;
+        lastY[slot] = y;
+        lastZ[slot] = z;
+
+        if (!dirty[slot]) {
+            double sx = x - savedX[slot];
+            double sy = y - savedY[slot];
+            double sz = z - savedZ[slot];
+            dirty[slot] = sx * sx + sy * sy + sz * sz > positionThresholdSquared;
+        }
+    }
+
+    // 退出したプレイヤーのスロットを解放し、未反映の移動距離を返す
+    public double quit(UUID uuid) {
+        Integer slot = slots.remove(uuid);
+        if (slot == null) {
+            return 0;
+        }
+
+        double distance = pendingDistance[slot];
+        pendingDistance[slot] = 0;
+        uuids[slot] = null;
+        worlds[slot] = null;
+        dirty[slot] = false;
+        freeSlots[freeCount++] = slot;
+        return distance;
+    }
+
+    // quit で返した移動距離が溜まり始めた時刻
+    public long getLastDrainMillis() {
+        return lastDrainMillis;
+    }
+
+    // 溜まった移動距離を統計バッファとオンライン中の今日の統計に渡す
+    public void drainTo(StatBuffer statBuffer, LiveStats liveStats) {
+        long since = lastDrainMillis;
+        lastDrainMillis = System.currentTimeMillis();
+        for (int slot = 0; slot < uuids.length; slot++) {
+            if (uuids[slot] != null && pendingDistance[slot] > 0) {
+                statBuffer.addDistance(uuids[slot], pendingDistance[slot], since);
+                liveStats.addDistance(uuids[slot], pendingDistance[slot]);
+                pendingDistance[slot] = 0;
+            }
+        }
+    }
+
+    // 保存対象になったプレイヤーの最新座標を取り出す
+    public List<PositionCheckpoint> drainDirtyPositions() {
+        List<PositionCheckpoint> positions = new ArrayList<>();
+        for (int slot = 0; slot < uuids.length; slot++) {
+            if (dirty[slot]) {
+                positions.add(new PositionCheckpoint(uuids[slot], lastX[slot], lastY[slot], lastZ[slot]));
+                savedX[slot] = lastX[slot];
+                savedY[slot] = lastY[slot];
+                savedZ[slot] = lastZ[slot];
+                dirty[slot] = false;
+            }
+        }
+        return positions;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+
+        // 配列を拡張し、増えた分を空きスロットに追加する
+        int oldCapacity = uuids.length;
+        int newCapacity = Math.max(16, oldCapacity * 2);
+        uuids = Arrays.copyOf(uuids, newCapacity);
+        worlds = Arrays.copyOf(worlds, newCapacity);
+        lastX = Arrays.copyOf(lastX, newCapacity);
+        lastY = Arrays.copyOf(lastY, newCapacity);
+        lastZ = Arrays.copyOf(lastZ, newCapacity);
+        savedX = Arrays.copyOf(savedX, newCapacity);
+        savedY = Arrays.copyOf(savedY, newCapacity);
+        savedZ = Arrays.copyOf(savedZ, newCapacity);
+        pendingDistance = Arrays.copyOf(pendingDistance, newCapacity);
+        dirty = Arrays.copyOf(dirty, newCapacity);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+
+        for (int slot = newCapacity - 1; slot > oldCapacity; slot--) {
+            freeSlots[freeCount++] = slot;
+        }
+        return oldCapacity;
+    }
+}
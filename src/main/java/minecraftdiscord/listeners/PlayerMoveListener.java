@@ -0,0 +1,34 @@
+package minecraftdiscord.listeners;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+/**
+ * 移動イベントごとに移動距離を集計するリスナー（stats.movement_mode が event の場合のみ登録する）
+ */
+public class PlayerMoveListener implements Listener {
+
+    private final MovementTracker movementTracker;
+
+    public PlayerMoveListener(MinecraftDiscordPlugin plugin) {
+        this.movementTracker = plugin.getMovementTracker();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+
+        // プレイヤーが実際に移動した場合（x/y/z座標の変化）。頻繁に呼ばれるのでオブジェクトを生成しない
+        if (from.getBlockX() != to.getBlockX() || from.getBlockY() != to.getBlockY() || from.getBlockZ() != to.getBlockZ()) {
+            // 移動距離と最新の座標を記録（座標は StatFlushTask がまとめて保存する）
+            Player player = event.getPlayer();
+            movementTracker.move(player.getUniqueId(), to.getWorld(), to.getX(), to.getY(), to.getZ());
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package minecraftdiscord.listeners;
 
 import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.AdvancementDictionary;
 import minecraftdiscord.database.DatabaseManager;
-import org.bukkit.Location;
+import minecraftdiscord.database.LiveStats;
+import minecraftdiscord.database.StatBuffer;
+import org.bukkit.NamespacedKey;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -12,21 +15,24 @@ import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.PlayerAdvancementDoneEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.ServerLoadEvent;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class PlayerStatListener implements Listener {
 
     private final MinecraftDiscordPlugin plugin;
-    private final Map<UUID, Location> lastLocations = new HashMap<>();
-    private final Map<UUID, Long> joinTimes = new HashMap<>();
+    private final StatBuffer statBuffer;
+    private final MovementTracker movementTracker;
+    private final LiveStats liveStats;
 
     public PlayerStatListener(MinecraftDiscordPlugin plugin) {
         this.plugin = plugin;
+        this.statBuffer = plugin.getStatBuffer();
+        this.movementTracker = plugin.getMovementTracker();
+        this.liveStats = plugin.getLiveStats();
     }
 
     @EventHandler
@@ -34,11 +40,17 @@ public class PlayerStatListener implements Listener {
         Player player = event.getPlayer();
         UUID uuid = player.getUniqueId();
 
-        // 接続時間を記録
-        joinTimes.put(uuid, System.currentTimeMillis());
+        // プレイ時間の記録を開始
+        plugin.getSessionLedger().startSession(uuid);
 
         // 最初の位置を記録
-        lastLocations.put(uuid, player.getLocation());
+        movementTracker.join(uuid, player.getLocation());
+
+        // 今日の統計を読み込み、以降の差分をメモリ上で加算する
+        liveStats.join(player);
+
+        // /regist で現在の名前を解決できるようにする
+        plugin.getNameResolver().playerJoined(uuid, player.getName());
     }
 
     @EventHandler
@@ -46,71 +58,21 @@ public class PlayerStatListener implements Listener {
         Player player = event.getPlayer();
         UUID uuid = player.getUniqueId();
 
-        // プレイ時間の計算と保存
-        if (joinTimes.containsKey(uuid)) {
-            long joinTime = joinTimes.get(uuid);
-            long quitTime = System.currentTimeMillis();
-            long playTimeMillis = quitTime - joinTime;
-            int playTimeMinutes = (int) (playTimeMillis / (1000 * 60));
-
-            // プレイ時間を更新
-            if (playTimeMinutes > 0) {
-                DatabaseManager dbManager = plugin.getDatabaseManager();
-                dbManager.updatePlayTime(player, playTimeMinutes);
-            }
+        liveStats.quit(uuid);
 
-            // データを削除
-            joinTimes.remove(uuid);
+        // 前回のチェックポイント以降のプレイ時間を保存
+        plugin.getSessionLedger().endSession(uuid);
+
+        // 未反映の移動距離をバッファに移し、バッファに残っている統計を書き込む
+        double distance = movementTracker.quit(uuid);
+        if (distance > 0) {
+            statBuffer.addDistance(uuid, distance, movementTracker.getLastDrainMillis());
         }
+        plugin.getStatFlushTask().flushPlayer(uuid);
 
         // 最後の位置を保存
         DatabaseManager dbManager = plugin.getDatabaseManager();
         dbManager.updatePosition(player);
-
-        // ロケーションキャッシュをクリア
-        lastLocations.remove(uuid);
-    }
-
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onPlayerMove(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
-        UUID uuid = player.getUniqueId();
-        Location from = event.getFrom();
-        Location to = event.getTo();
-
-        // プレイヤーが実際に移動した場合（x/y/z座標の変化）
-        if (from.getBlockX() != to.getBlockX() || from.getBlockY() != to.getBlockY() || from.getBlockZ() != to.getBlockZ()) {
-            // 前回の位置がある場合
-            if (lastLocations.containsKey(uuid)) {
-                Location lastLoc = lastLocations.get(uuid);
-
-                // 移動距離の計算（3Dユークリッド距離）
-                double distance = 0;
-                // 同じワールドの場合のみ計算
-                if (lastLoc.getWorld().equals(to.getWorld())) {
-                    distance = lastLoc.distance(to);
-                }
-
-                // 距離が大きすぎる場合はテレポートと判断して無視
-                if (distance > 0 && distance < 100) {
-                    DatabaseManager dbManager = plugin.getDatabaseManager();
-                    dbManager.updateDistanceTraveled(player, distance);
-                }
-            }
-
-            // 現在の位置を保存
-            lastLocations.put(uuid, to.clone());
-        }
-
-        // 10ブロック移動ごとに座標を保存（パフォーマンスのため）
-        if (lastLocations.containsKey(uuid)) {
-            Location lastSavedLoc = lastLocations.get(uuid);
-            if (lastSavedLoc.distanceSquared(to) > 100) { // 10ブロックの二乗 = 100
-                DatabaseManager dbManager = plugin.getDatabaseManager();
-                dbManager.updatePosition(player);
-                lastLocations.put(uuid, to.clone());
-            }
-        }
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -124,8 +86,8 @@ public class PlayerStatListener implements Listener {
                     event.getEntityType() != EntityType.ARMOR_STAND &&
                     event.getEntityType() != EntityType.ITEM_FRAME) {
 
-                DatabaseManager dbManager = plugin.getDatabaseManager();
-                dbManager.incrementKills(killer);
+                statBuffer.addKill(killer.getUniqueId(), event.getEntityType());
+                liveStats.addKill(killer.getUniqueId(), event.getEntityType());
             }
         }
     }
@@ -134,19 +96,38 @@ public class PlayerStatListener implements Listener {
     public void onPlayerDeath(PlayerDeathEvent event) {
         Player player = event.getEntity();
 
-        DatabaseManager dbManager = plugin.getDatabaseManager();
-        dbManager.incrementDeaths(player);
+        statBuffer.addDeath(player.getUniqueId());
+        liveStats.addDeath(player.getUniqueId());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerAdvancement(PlayerAdvancementDoneEvent event) {
-        Player player = event.getPlayer();
-        String advancementKey = event.getAdvancement().getKey().toString();
+        UUID uuid = event.getPlayer().getUniqueId();
+        NamespacedKey key = event.getAdvancement().getKey();
+
+        // 進捗の辞書の作成中は、作成後に反映する
+        AdvancementDictionary dictionary = plugin.getAdvancementDictionary().getNow(null);
+        if (dictionary != null && (dictionary.idOf(key) >= 0 || event.getAdvancement().getDisplay() == null)) {
+            addAchievement(uuid, dictionary.idOf(key));
+        } else {
+            // 辞書の作成後に追加された表示付きの進捗は、辞書を作り直してIDを割り当ててから反映する
+            CompletableFuture<AdvancementDictionary> pending = dictionary != null
+                    ? plugin.refreshAdvancementDictionary()
+                    : plugin.getAdvancementDictionary();
+            pending.thenAccept(created -> addAchievement(uuid, created.idOf(key)));
+        }
+    }
+
+    // データパックの再読み込みで進捗が増減するため、進捗の辞書を作り直す
+    @EventHandler
+    public void onServerLoad(ServerLoadEvent event) {
+        plugin.refreshAdvancementDictionary();
+    }
 
-        // レシピ解放は除外
-        if (!advancementKey.contains("recipes")) {
-            DatabaseManager dbManager = plugin.getDatabaseManager();
-            dbManager.addAchievement(player, advancementKey);
+    // 辞書にない進捗（レシピ解放などの表示のないもの）は除外
+    private void addAchievement(UUID uuid, int advancementId) {
+        if (advancementId >= 0) {
+            statBuffer.addAchievement(uuid, advancementId);
         }
     }
 }
\ No newline at end of file
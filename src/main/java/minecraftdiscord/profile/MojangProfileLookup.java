@@ -0,0 +1,69 @@
+package minecraftdiscord.profile;
+
+import net.dv8tion.jda.api.utils.data.DataObject;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Mojang API（または同じ形式の応答を返すURL）でMinecraft IDからUUIDを調べる
+ */
+public final class MojangProfileLookup implements ProfileLookup {
+
+    private final Logger logger;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    /**
+     * @param baseUrl 名前を末尾に付けて問い合わせるURL（例: https://api.mojang.com/users/profiles/minecraft/）
+     */
+    public MojangProfileLookup(Logger logger, String baseUrl, Duration timeout) {
+        this.logger = logger;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<ResolvedProfile> lookup(String name) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + URLEncoder.encode(name, StandardCharsets.UTF_8)))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    // 存在しない名前は 204 / 404 が返る
+                    if (response.statusCode() != 200 || response.body().isEmpty()) {
+                        if (response.statusCode() != 204 && response.statusCode() != 404) {
+                            logger.warning("Minecraft IDの検索に失敗しました（HTTP " + response.statusCode() + "）: " + name);
+                        }
+                        return null;
+                    }
+
+                    DataObject profile = DataObject.fromJson(response.body());
+                    return new ResolvedProfile(parseUndashedUuid(profile.getString("id")), profile.getString("name"));
+                })
+                .exceptionally(e -> {
+                    logger.warning("Minecraft IDの検索中にエラーが発生しました: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    // ハイフンなしの32桁の16進数をUUIDに変換する
+    private static UUID parseUndashedUuid(String id) {
+        return new UUID(Long.parseUnsignedLong(id.substring(0, 16), 16), Long.parseUnsignedLong(id.substring(16, 32), 16));
+    }
+}
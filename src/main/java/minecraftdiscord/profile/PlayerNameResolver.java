@@ -0,0 +1,148 @@
+package minecraftdiscord.profile;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Minecraft IDからUUIDをメインスレッドを使わずに解決する
+ *
+ * サーバーのユーザーキャッシュ（usercache.json）と players テーブルから名前の索引を作り、
+ * 索引にない名前だけを {@link ProfileLookup} で非同期に調べる。
+ */
+public final class PlayerNameResolver {
+
+    // Minecraft IDとして有効な名前（これ以外は問い合わせない）
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+
+    private final MinecraftDiscordPlugin plugin;
+    private final Logger logger;
+    private final ProfileLookup lookup;
+
+    // 小文字の名前 → プロフィール
+    private final Map<String, ResolvedProfile> byName = new ConcurrentHashMap<>();
+
+    // 起動後に参加したプレイヤー（初参加でまだプレイヤーデータが保存されていない場合がある）
+    private final Set<UUID> joined = ConcurrentHashMap.newKeySet();
+
+    // 索引の構築が終わると完了する（それまでの問い合わせは構築後に処理する）
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    private File userCacheFile;
+    private File playerDataFolder;
+
+    public PlayerNameResolver(MinecraftDiscordPlugin plugin, ProfileLookup lookup) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.lookup = lookup;
+    }
+
+    // 索引を names から作成済みの状態で始める（テスト用）
+    PlayerNameResolver(Logger logger, ProfileLookup lookup, Map<UUID, String> names) {
+        this.plugin = null;
+        this.logger = logger;
+        this.lookup = lookup;
+        names.forEach(this::remember);
+        ready.complete(null);
+    }
+
+    /**
+     * 索引をバックグラウンドで作成する（メインスレッドから呼ぶ）
+     */
+    public void start() {
+        // ファイルの場所だけをメインスレッドで決めておく
+        userCacheFile = new File(Bukkit.getWorldContainer(), "usercache.json");
+        World mainWorld = Bukkit.getWorlds().isEmpty() ? null : Bukkit.getWorlds().get(0);
+        playerDataFolder = mainWorld != null ? new File(mainWorld.getWorldFolder(), "playerdata") : null;
+
+        // 登録時の名前を先に入れ、ユーザーキャッシュの新しい名前で上書きする
+        plugin.getDatabaseManager().loadPlayerNames()
+                .thenAccept(names -> names.forEach(this::remember))
+                .thenRunAsync(this::loadUserCache)
+                .whenComplete((unused, e) -> {
+                    if (e != null) {
+                        logger.severe("Minecraft IDの索引作成中にエラーが発生しました: " + e.getMessage());
+                        e.printStackTrace();
+                    } else {
+                        logger.info("Minecraft IDの索引を作成しました（" + byName.size() + "件）");
+                    }
+                    ready.complete(null);
+                });
+    }
+
+    // 参加したプレイヤーの現在の名前を索引に加える
+    public void playerJoined(UUID uuid, String name) {
+        joined.add(uuid);
+        remember(uuid, name);
+    }
+
+    private void remember(UUID uuid, String name) {
+        if (name != null) {
+            byName.put(name.toLowerCase(Locale.ROOT), new ResolvedProfile(uuid, name));
+        }
+    }
+
+    /**
+     * 名前からプロフィールを解決する（見つからない場合はnullで完了する）
+     */
+    public CompletableFuture<ResolvedProfile> resolve(String name) {
+        if (name == null || !VALID_NAME.matcher(name).matches()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return ready.thenCompose(unused -> {
+            ResolvedProfile known = byName.get(name.toLowerCase(Locale.ROOT));
+            if (known != null) {
+                return CompletableFuture.completedFuture(known);
+            }
+
+            return lookup.lookup(name).thenApply(profile -> {
+                if (profile != null) {
+                    remember(profile.getUuid(), profile.getName());
+                }
+                return profile;
+            });
+        });
+    }
+
+    /**
+     * このサーバーに参加したことがあるか（メインワールドのプレイヤーデータの有無で判定する）
+     */
+    public boolean hasPlayedBefore(UUID uuid) {
+        if (joined.contains(uuid)) {
+            return true;
+        }
+        return playerDataFolder != null && new File(playerDataFolder, uuid + ".dat").isFile();
+    }
+
+    private void loadUserCache() {
+        if (userCacheFile == null || !userCacheFile.isFile()) {
+            return;
+        }
+
+        try (InputStream in = new FileInputStream(userCacheFile)) {
+            DataArray entries = DataArray.fromJson(in);
+            for (int i = 0; i < entries.length(); i++) {
+                DataObject entry = entries.getObject(i);
+                remember(UUID.fromString(entry.getString("uuid")), entry.getString("name"));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warning("usercache.jsonの読み込みに失敗しました: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package minecraftdiscord.profile;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * サーバーが知らないMinecraft IDを外部から調べる（差し替え可能）
+ */
+@FunctionalInterface
+public interface ProfileLookup {
+
+    // 外部への問い合わせを行わない
+    ProfileLookup NONE = name -> CompletableFuture.completedFuture(null);
+
+    /**
+     * 指定した名前のプロフィールを非同期で調べる（存在しない場合や失敗した場合はnullで完了する）
+     */
+    CompletableFuture<ResolvedProfile> lookup(String name);
+}
@@ -0,0 +1,25 @@
+package minecraftdiscord.profile;
+
+import java.util.UUID;
+
+/**
+ * Minecraft IDから解決したプレイヤーのUUIDと正式な表記の名前
+ */
+public final class ResolvedProfile {
+
+    private final UUID uuid;
+    private final String name;
+
+    public ResolvedProfile(UUID uuid, String name) {
+        this.uuid = uuid;
+        this.name = name;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
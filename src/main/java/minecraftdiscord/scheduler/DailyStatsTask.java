@@ -16,7 +16,6 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -42,9 +41,18 @@ public class DailyStatsTask {
                 try {
                     logger.info("日次統計タスクを実行中...");
 
+                    // 週間・月間ランキングの集計期間を進める（進めた場合はメモリ上のランキングも作り直される）
+                    plugin.getDatabaseManager().rollLeaderboardWindows();
+
+                    // 古い日次データを週・月単位にまとめる
+                    plugin.getDatabaseManager().runRetention();
+
                     // 統計データを処理
                     processDailyStats();
 
+                    // 読み取りキャッシュのヒット率を記録する
+                    plugin.getDatabaseManager().logCacheStats();
+
                     logger.info("日次統計タスクが完了しました。");
                 } catch (Exception e) {
                     logger.severe("日次統計タスク実行中にエラーが発生しました: " + e.getMessage());
@@ -61,51 +69,51 @@ public class DailyStatsTask {
         DiscordBot discordBot = plugin.getDiscordBot();
 
         // 全プレイヤーの統計を取得
-        List<PlayerData> allPlayerStats = dbManager.getAllPlayersStats();
-
-        if (!allPlayerStats.isEmpty()) {
-            // Discord にメッセージを送信
-            TextChannel channel = discordBot.getChatBridgeChannel();
-            if (channel != null) {
-                EmbedBuilder embed = new EmbedBuilder();
-                embed.setTitle("本日のサーバー統計");
-                embed.setColor(Color.MAGENTA);
-
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-                String today = LocalDateTime.now().format(formatter);
-                embed.setDescription("**" + today + "**の統計情報");
-
-                StringBuilder playerStatsBuilder = new StringBuilder();
-                for (PlayerData data : allPlayerStats) {
-                    String playerStats = String.format("**%s**\n" +
-                                    "キル: %d | 死亡: %d | 移動距離: %sブロック | プレイ時間: %s\n",
-                            data.getMinecraftName(),
-                            data.getKills(),
-                            data.getDeaths(),
-                            data.getFormattedDailyDistance(),
-                            data.getFormattedPlayTime());
-
-                    // Discordのメッセージには文字数制限があるので、長すぎる場合は分割する
-                    if (playerStatsBuilder.length() + playerStats.length() > 1900) {
-                        embed.addField("プレイヤー統計", playerStatsBuilder.toString(), false);
-                        playerStatsBuilder = new StringBuilder();
+        dbManager.getAllPlayersStats().thenAccept(allPlayerStats -> {
+            if (!allPlayerStats.isEmpty()) {
+                // Discord にメッセージを送信
+                TextChannel channel = discordBot.getChatBridgeChannel();
+                if (channel != null) {
+                    EmbedBuilder embed = new EmbedBuilder();
+                    embed.setTitle("本日のサーバー統計");
+                    embed.setColor(Color.MAGENTA);
+
+                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+                    String today = LocalDateTime.now().format(formatter);
+                    embed.setDescription("**" + today + "**の統計情報");
+
+                    StringBuilder playerStatsBuilder = new StringBuilder();
+                    for (PlayerData data : allPlayerStats) {
+                        String playerStats = String.format("**%s**\n" +
+                                        "キル: %d | 死亡: %d | 移動距離: %sブロック | プレイ時間: %s\n",
+                                data.getMinecraftName(),
+                                data.getKills(),
+                                data.getDeaths(),
+                                data.getFormattedDailyDistance(),
+                                data.getFormattedPlayTime());
+
+                        // Discordのメッセージには文字数制限があるので、長すぎる場合は分割する
+                        if (playerStatsBuilder.length() + playerStats.length() > 1900) {
+                            embed.addField("プレイヤー統計", playerStatsBuilder.toString(), false);
+                            playerStatsBuilder = new StringBuilder();
+                        }
+
+                        playerStatsBuilder.append(playerStats).append("\n");
                     }
 
-                    playerStatsBuilder.append(playerStats).append("\n");
-                }
-
-                if (playerStatsBuilder.length() > 0) {
-                    embed.addField("プレイヤー統計", playerStatsBuilder.toString(), false);
-                }
+                    if (playerStatsBuilder.length() > 0) {
+                        embed.addField("プレイヤー統計", playerStatsBuilder.toString(), false);
+                    }
 
-                embed.setFooter("毎日の統計 | 自動生成", null);
+                    embed.setFooter("毎日の統計 | 自動生成", null);
 
-                channel.sendMessageEmbeds(embed.build()).queue();
+                    channel.sendMessageEmbeds(embed.build()).queue();
 
-                // 日次距離統計をリセット
-                dbManager.resetDailyStats();
+                    // 日次距離統計をリセット
+                    dbManager.resetDailyStats();
+                }
             }
-        }
+        });
     }
 
     private long getMillisUntilMidnight() {
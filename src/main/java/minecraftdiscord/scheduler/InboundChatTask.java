@@ -0,0 +1,81 @@
+package minecraftdiscord.scheduler;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * DiscordからMinecraftへ送る行を受け取り、毎tickメインスレッドでまとめてプレイヤーに送る
+ *
+ * 追加はJDAのスレッドから行う。送信待ちが上限に達した行は捨て、次の送信時に捨てた件数を1行で知らせる。
+ */
+public class InboundChatTask {
+
+    private final MinecraftDiscordPlugin plugin;
+    private final Logger logger;
+    private final int maxPendingLines;
+
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicInteger droppedLines = new AtomicInteger();
+
+    public InboundChatTask(MinecraftDiscordPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.maxPendingLines = Math.max(1, plugin.getConfig().getInt("messages.discord_to_minecraft_queue_size", 200));
+    }
+
+    public void schedule() {
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                deliver();
+            }
+        }.runTaskTimer(plugin, 1, 1);
+
+        logger.info("Discordからのメッセージの送信タスクがスケジュールされました。送信待ちの上限: " + maxPendingLines + "行");
+    }
+
+    /**
+     * 1行を送信待ちに追加する（任意のスレッドから呼べる）
+     */
+    public void offer(String line) {
+        if (pendingCount.incrementAndGet() > maxPendingLines) {
+            pendingCount.decrementAndGet();
+            droppedLines.incrementAndGet();
+            return;
+        }
+        pending.add(line);
+    }
+
+    // 送信待ちの行をすべてのプレイヤーとコンソールに1回で送る（メインスレッドで実行）
+    private void deliver() {
+        if (pending.isEmpty() && droppedLines.get() == 0) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            lines.add(line);
+        }
+        int dropped = droppedLines.getAndSet(0);
+        if (dropped > 0) {
+            lines.add("[Discord] ほか " + dropped + " 件のメッセージ");
+        }
+
+        String[] messages = lines.toArray(new String[0]);
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            player.sendMessage(messages);
+        }
+        plugin.getServer().getConsoleSender().sendMessage(messages);
+    }
+}
@@ -0,0 +1,54 @@
+package minecraftdiscord.scheduler;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.listeners.MovementTracker;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.logging.Logger;
+
+/**
+ * 一定tickごとに全オンラインプレイヤーの位置を読み取り、前回からの直線距離を移動距離として集計する
+ *
+ * 移動イベントの数に関係なく処理量はオンライン人数だけで決まる。
+ * サンプル間の経路は直線とみなすため、曲がりながらの移動はイベント方式より短く集計される。
+ */
+public class MovementSampleTask {
+
+    private final MinecraftDiscordPlugin plugin;
+    private final Logger logger;
+    private final MovementTracker movementTracker;
+
+    // 位置の読み取りに使い回すLocation（メインスレッド専用）
+    private final Location scratch = new Location(null, 0, 0, 0);
+
+    public MovementSampleTask(MinecraftDiscordPlugin plugin, MovementTracker movementTracker) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.movementTracker = movementTracker;
+    }
+
+    public void schedule() {
+        long intervalTicks = Math.max(1, plugin.getConfig().getLong("stats.movement_sample_ticks", 20));
+
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }.runTaskTimer(plugin, intervalTicks, intervalTicks);
+
+        logger.info("移動距離のサンプリングタスクがスケジュールされました。間隔: " + intervalTicks + "tick");
+    }
+
+    private void sample() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            player.getLocation(scratch);
+
+            // 移動距離と最新の座標を記録（座標は StatFlushTask がまとめて保存する）
+            movementTracker.move(player.getUniqueId(), scratch.getWorld(), scratch.getX(), scratch.getY(), scratch.getZ());
+        }
+    }
+}
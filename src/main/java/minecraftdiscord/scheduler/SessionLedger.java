@@ -0,0 +1,115 @@
+package minecraftdiscord.scheduler;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.PlaytimeCredit;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * オンライン中のプレイヤーのプレイ時間を一定間隔でまとめてデータベースに書き込む
+ *
+ * 日付をまたいだセッションは日ごとに分けて加算する。メインスレッドからのみ呼び出す。
+ */
+public class SessionLedger {
+
+    private static final long MINUTE_MILLIS = 60_000;
+
+    private static final class Session {
+        // 分の端数はセッション開始時刻を基準に切り捨てるため、チェックポイントごとの誤差は累積しない
+        private final long startMillis;
+        private long checkpointMillis;
+
+        private Session(long startMillis) {
+            this.startMillis = startMillis;
+            this.checkpointMillis = startMillis;
+        }
+    }
+
+    private final MinecraftDiscordPlugin plugin;
+    private final Logger logger;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private final Map<UUID, Session> sessions = new HashMap<>();
+
+    public SessionLedger(MinecraftDiscordPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+    }
+
+    public void schedule() {
+        long intervalMinutes = Math.max(1, plugin.getConfig().getLong("stats.playtime_update_interval", 5));
+        long intervalTicks = intervalMinutes * 60 * 20;
+
+        // リロード時など、既にオンラインのプレイヤーのセッションを開始する
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            startSession(player.getUniqueId());
+        }
+
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                checkpointAll();
+            }
+        }.runTaskTimer(plugin, intervalTicks, intervalTicks);
+
+        logger.info("プレイ時間の定期保存タスクがスケジュールされました。間隔: " + intervalMinutes + "分");
+    }
+
+    public void startSession(UUID uuid) {
+        sessions.putIfAbsent(uuid, new Session(System.currentTimeMillis()));
+    }
+
+    // 退出したプレイヤーの未保存のプレイ時間を書き込む
+    public CompletableFuture<Void> endSession(UUID uuid) {
+        Session session = sessions.remove(uuid);
+        if (session == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<PlaytimeCredit> credits = new ArrayList<>();
+        collect(uuid, session, System.currentTimeMillis(), credits);
+        return plugin.getDatabaseManager().addPlayTime(credits);
+    }
+
+    // 全オンラインプレイヤーの前回からのプレイ時間を1回の書き込みで保存する
+    public CompletableFuture<Void> checkpointAll() {
+        long now = System.currentTimeMillis();
+        List<PlaytimeCredit> credits = new ArrayList<>();
+        for (Map.Entry<UUID, Session> entry : sessions.entrySet()) {
+            collect(entry.getKey(), entry.getValue(), now, credits);
+        }
+        return plugin.getDatabaseManager().addPlayTime(credits);
+    }
+
+    // 前回のチェックポイントから now までを日ごとに分けて加算分を求める
+    private void collect(UUID uuid, Session session, long now, List<PlaytimeCredit> credits) {
+        split(uuid, session.startMillis, session.checkpointMillis, now, zoneId, credits);
+        session.checkpointMillis = Math.max(session.checkpointMillis, now);
+    }
+
+    // startMillis に始まったセッションの from から now までのプレイ時間を、zoneId での日ごとに分ける
+    static void split(UUID uuid, long startMillis, long from, long now, ZoneId zoneId, List<PlaytimeCredit> credits) {
+        while (from < now) {
+            LocalDate day = Instant.ofEpochMilli(from).atZone(zoneId).toLocalDate();
+            long nextDay = day.plusDays(1).atStartOfDay(zoneId).toInstant().toEpochMilli();
+            long to = Math.min(now, nextDay);
+
+            long minutes = (to - startMillis) / MINUTE_MILLIS - (from - startMillis) / MINUTE_MILLIS;
+            if (minutes > 0) {
+                credits.add(new PlaytimeCredit(uuid, day.toEpochDay(), (int) minutes));
+            }
+            from = to;
+        }
+    }
+}
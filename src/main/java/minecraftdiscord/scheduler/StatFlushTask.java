@@ -0,0 +1,81 @@
+package minecraftdiscord.scheduler;
+
+import minecraftdiscord.MinecraftDiscordPlugin;
+import minecraftdiscord.database.LiveStats;
+import minecraftdiscord.database.StatBuffer;
+import minecraftdiscord.database.StatDelta;
+import minecraftdiscord.listeners.MovementTracker;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+public class StatFlushTask {
+
+    private final MinecraftDiscordPlugin plugin;
+    private final Logger logger;
+    private final StatBuffer statBuffer;
+    private final MovementTracker movementTracker;
+
+    public StatFlushTask(MinecraftDiscordPlugin plugin, StatBuffer statBuffer, MovementTracker movementTracker) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.statBuffer = statBuffer;
+        this.movementTracker = movementTracker;
+    }
+
+    public void schedule() {
+        // 設定された間隔（秒）でバッファをデータベースへ書き出す
+        // 移動距離はメインスレッドで集計しているため、取り出しもメインスレッドで行う（書き込み自体は非同期）
+        long intervalSeconds = Math.max(1, plugin.getConfig().getLong("stats.flush_interval_seconds", 10));
+        long intervalTicks = intervalSeconds * 20;
+
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                flushAll();
+            }
+        }.runTaskTimer(plugin, intervalTicks, intervalTicks);
+
+        logger.info("統計バッファの書き込みタスクがスケジュールされました。間隔: " + intervalSeconds + "秒");
+    }
+
+    // 全プレイヤーの差分と、閾値以上移動したプレイヤーの座標を書き込む（メインスレッドから呼ぶ）
+    public CompletableFuture<Boolean> flushAll() {
+        LiveStats liveStats = plugin.getLiveStats();
+        movementTracker.drainTo(statBuffer, liveStats);
+        plugin.getDatabaseManager().updatePositions(movementTracker.drainDirtyPositions());
+
+        // 差分は発生した日ごとに分かれており、日付が変わる前の分は前日の行に書き込まれる
+        CompletableFuture<Boolean> flushed = flush(statBuffer.drainAll());
+
+        // 日付が変わっていれば新しい日の統計を読み込み直す。読み込みはこの書き込みの後に行われるため、
+        // 日付が変わった後に発生してまだ書き込まれていなかった差分も含まれる
+        liveStats.rollDay();
+        return flushed;
+    }
+
+    // 退出したプレイヤーの差分を書き込む
+    public CompletableFuture<Boolean> flushPlayer(UUID uuid) {
+        List<StatDelta> deltas = statBuffer.drain(uuid);
+        if (deltas.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return flush(deltas);
+    }
+
+    // 書き込みに失敗した差分は失わないようにバッファに戻し、次回の書き込みで再度書き込む
+    private CompletableFuture<Boolean> flush(Collection<StatDelta> deltas) {
+        return plugin.getDatabaseManager().flushStatDeltas(deltas).thenApply(flushed -> {
+            if (!flushed) {
+                statBuffer.restore(deltas);
+                logger.warning("書き込みに失敗した統計をバッファに戻しました（" + deltas.size() + "件）");
+            }
+            return flushed;
+        });
+    }
+}
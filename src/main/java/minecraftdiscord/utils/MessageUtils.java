@@ -11,9 +11,9 @@ import java.time.format.DateTimeFormatter;
 public class MessageUtils {
 
     // Discordメッセージの最大文字数
-    private static final int MAX_DISCORD_CONTENT_LENGTH = 2000;
+    public static final int MAX_DISCORD_CONTENT_LENGTH = 2000;
     private static final int MAX_EMBED_DESCRIPTION_LENGTH = 4096;
-    private static final int MAX_EMBED_FIELD_VALUE_LENGTH = 1024;
+    public static final int MAX_EMBED_FIELD_VALUE_LENGTH = 1024;
 
     // タイムスタンプのフォーマッター
     private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
@@ -0,0 +1,92 @@
+package minecraftdiscord.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KillTypeCodecTest {
+
+    @Test
+    void roundTripsCountsIncludingLargeIdsAndValues() {
+        int[] counts = new int[300];
+        counts[0] = 1;
+        counts[5] = 127;
+        counts[6] = 128;
+        counts[299] = 1_000_000;
+
+        byte[] blob = KillTypeCodec.encode(counts);
+        int[] decoded = KillTypeCodec.decode(blob);
+
+        assertArrayEquals(counts, Arrays.copyOf(decoded, counts.length));
+        for (int id = counts.length; id < decoded.length; id++) {
+            assertEquals(0, decoded[id]);
+        }
+        assertEquals(127, KillTypeCodec.count(blob, 5));
+        assertEquals(1_000_000, KillTypeCodec.count(blob, 299));
+        assertEquals(0, KillTypeCodec.count(blob, 7));
+        assertEquals(0, KillTypeCodec.count(blob, 500));
+    }
+
+    @Test
+    void encodesNoKillsAsNull() {
+        assertNull(KillTypeCodec.encode(new int[4]));
+        assertNull(KillTypeCodec.encode(null));
+        assertEquals(0, KillTypeCodec.decode(null).length);
+        assertEquals(0, KillTypeCodec.count(null, 0));
+    }
+
+    @Test
+    void addMergesCountsOfBothSides() {
+        byte[] a = KillTypeCodec.encode(new int[]{2, 0, 3});
+        byte[] b = KillTypeCodec.encode(new int[]{0, 0, 4, 0, 1});
+
+        int[] sum = KillTypeCodec.decode(KillTypeCodec.add(a, b));
+        assertEquals(2, sum[0]);
+        assertEquals(7, sum[2]);
+        assertEquals(1, sum[4]);
+        assertArrayEquals(a, KillTypeCodec.add(a, null));
+        assertArrayEquals(b, KillTypeCodec.add(null, b));
+    }
+
+    @Test
+    void sqlFunctionsMatchTheJavaImplementation() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement statement = connection.createStatement()) {
+            KillTypeCodec.registerFunctions(connection);
+            statement.execute("CREATE TABLE t (g INTEGER, blob BLOB)");
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO t VALUES (?, ?)")) {
+                int[][] rows = {{1, 0, 2}, {0, 3}, null};
+                for (int[] row : rows) {
+                    insert.setInt(1, 1);
+                    insert.setBytes(2, KillTypeCodec.encode(row));
+                    insert.executeUpdate();
+                }
+            }
+
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT kill_types_sum(blob), SUM(kill_type_count(blob, 1)) FROM t GROUP BY g")) {
+                rs.next();
+                int[] sum = KillTypeCodec.decode(rs.getBytes(1));
+                assertEquals(1, sum[0]);
+                assertEquals(3, sum[1]);
+                assertEquals(2, sum[2]);
+                assertEquals(3, rs.getInt(2));
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT kill_types_add(NULL, NULL), kill_types_sum(blob) FROM t WHERE blob IS NULL")) {
+                rs.next();
+                assertNull(rs.getBytes(1));
+                assertNull(rs.getBytes(2));
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package minecraftdiscord.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LookupCacheTest {
+
+    // 該当なしを表す番兵値（DatabaseManager と同じく空文字列）
+    private static final String UNLINKED = "";
+
+    @Test
+    void cachesMissesWithASentinelUntilInvalidated() {
+        LookupCache<String, String> cache = new LookupCache<>(10, 60_000);
+        cache.put("discord", UNLINKED, cache.generation());
+        assertEquals(UNLINKED, cache.get("discord"));
+
+        // /regist と同じく全体を無効化すると番兵値も消える
+        cache.invalidateAll();
+        assertNull(cache.get("discord"));
+    }
+
+    @Test
+    void ignoresResultsLoadedBeforeAnInvalidation() {
+        LookupCache<String, String> cache = new LookupCache<>(10, 60_000);
+        long generation = cache.generation();
+        cache.invalidate("discord");
+        cache.put("discord", UNLINKED, generation);
+        assertNull(cache.get("discord"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        LookupCache<String, String> cache = new LookupCache<>(2, 60_000);
+        cache.put("a", "1", cache.generation());
+        cache.put("b", "2", cache.generation());
+        cache.get("a");
+        cache.put("c", "3", cache.generation());
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    void doesNotCacheNullsOrWhenTheTtlIsZero() {
+        LookupCache<String, String> cache = new LookupCache<>(10, 60_000);
+        cache.put("a", null, cache.generation());
+        assertEquals(0, cache.size());
+
+        LookupCache<String, String> disabled = new LookupCache<>(10, 0);
+        disabled.put("a", "1", disabled.generation());
+        assertNull(disabled.get("a"));
+        assertEquals(1, disabled.getMissCount());
+    }
+}
@@ -0,0 +1,218 @@
+package minecraftdiscord.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 変更前のスキーマ（UUIDと日付を文字列で保存する形式）のデータベースを最新の形式に変換できることを確かめる
+ */
+class SchemaMigratorTest {
+
+    private static final UUID ALICE = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private static final UUID BOB = UUID.fromString("61699b2e-d327-4a01-9f1e-0ea8c3f06bc6");
+    private static final LocalDate DAY1 = LocalDate.of(2024, 3, 30);
+    private static final LocalDate DAY2 = LocalDate.of(2024, 3, 31);
+
+    private Connection connection;
+
+    @BeforeEach
+    void createBaseline() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+
+        // schema_version が導入される前のプラグインが作成していたテーブルとデータ
+        execute(
+                "CREATE TABLE players (" +
+                        "minecraft_uuid TEXT PRIMARY KEY, " +
+                        "minecraft_name TEXT, " +
+                        "discord_id TEXT, " +
+                        "registered_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "CREATE TABLE player_stats (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "minecraft_uuid TEXT, " +
+                        "date TEXT, " +
+                        "kills INTEGER DEFAULT 0, " +
+                        "deaths INTEGER DEFAULT 0, " +
+                        "distance_traveled DOUBLE DEFAULT 0, " +
+                        "daily_distance DOUBLE DEFAULT 0, " +
+                        "play_time_minutes INTEGER DEFAULT 0, " +
+                        "achievements_count INTEGER DEFAULT 0, " +
+                        "last_x DOUBLE DEFAULT 0, " +
+                        "last_y DOUBLE DEFAULT 0, " +
+                        "last_z DOUBLE DEFAULT 0, " +
+                        "FOREIGN KEY (minecraft_uuid) REFERENCES players (minecraft_uuid), " +
+                        "UNIQUE (minecraft_uuid, date)" +
+                        ")",
+                "CREATE TABLE player_achievements (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "minecraft_uuid TEXT, " +
+                        "achievement_key TEXT, " +
+                        "unlocked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (minecraft_uuid) REFERENCES players (minecraft_uuid), " +
+                        "UNIQUE (minecraft_uuid, achievement_key)" +
+                        ")",
+
+                // Alice は登録済み、Bob は統計だけがある
+                "INSERT INTO players (minecraft_uuid, minecraft_name, discord_id) VALUES ('" + ALICE + "', 'Alice', '111')",
+                "INSERT INTO player_stats (minecraft_uuid, date, kills, deaths, distance_traveled, achievements_count) " +
+                        "VALUES ('" + ALICE + "', '" + DAY1 + "', 2, 0, 10.5, 1)",
+                "INSERT INTO player_stats (minecraft_uuid, date, kills, deaths, distance_traveled, achievements_count) " +
+                        "VALUES ('" + ALICE + "', '" + DAY2 + "', 3, 1, 4.5, 1)",
+                "INSERT INTO player_stats (minecraft_uuid, date, kills) VALUES ('" + BOB + "', '" + DAY2 + "', 1)",
+                // UUIDとして読めない行は移行しない
+                "INSERT INTO player_stats (minecraft_uuid, date, kills) VALUES ('not-a-uuid', '" + DAY2 + "', 9)",
+                "INSERT INTO player_achievements (minecraft_uuid, achievement_key) VALUES ('" + ALICE + "', 'minecraft:story/root')",
+                "INSERT INTO player_achievements (minecraft_uuid, achievement_key) VALUES ('" + ALICE + "', 'minecraft:story/mine_stone')",
+                "INSERT INTO player_achievements (minecraft_uuid, achievement_key) VALUES ('" + BOB + "', 'minecraft:story/root')"
+        );
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void baselineDatabaseIsConvertedToLatestSchema() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(connection, Logger.getLogger("SchemaMigratorTest"));
+        migrator.migrate();
+        assertEquals(9, migrator.getCurrentVersion());
+
+        // players: UUIDは16バイトのBLOB、統計だけのプレイヤーは discord_id が NULL の行になる
+        int alice;
+        int bob;
+        try (ResultSet rs = query("SELECT player_id, uuid, minecraft_name, discord_id FROM players ORDER BY player_id")) {
+            assertTrue(rs.next());
+            alice = rs.getInt("player_id");
+            assertEquals(ALICE, uuid(rs.getBytes("uuid")));
+            assertEquals("Alice", rs.getString("minecraft_name"));
+            assertEquals("111", rs.getString("discord_id"));
+
+            assertTrue(rs.next());
+            bob = rs.getInt("player_id");
+            assertEquals(BOB, uuid(rs.getBytes("uuid")));
+            assertNull(rs.getString("discord_id"));
+
+            assertFalse(rs.next());
+        }
+
+        // player_stats: 日付はエポック日
+        try (ResultSet rs = query("SELECT player_id, epoch_day, granularity, kills, deaths, distance_traveled " +
+                "FROM player_stats ORDER BY player_id, epoch_day")) {
+            assertTrue(rs.next());
+            assertEquals(alice, rs.getInt("player_id"));
+            assertEquals(DAY1.toEpochDay(), rs.getLong("epoch_day"));
+            assertEquals("day", rs.getString("granularity"));
+            assertEquals(2, rs.getInt("kills"));
+            assertEquals(10.5, rs.getDouble("distance_traveled"));
+
+            assertTrue(rs.next());
+            assertEquals(alice, rs.getInt("player_id"));
+            assertEquals(DAY2.toEpochDay(), rs.getLong("epoch_day"));
+            assertEquals(3, rs.getInt("kills"));
+            assertEquals(1, rs.getInt("deaths"));
+
+            assertTrue(rs.next());
+            assertEquals(bob, rs.getInt("player_id"));
+            assertEquals(DAY2.toEpochDay(), rs.getLong("epoch_day"));
+            assertEquals(1, rs.getInt("kills"));
+
+            assertFalse(rs.next());
+        }
+
+        // player_stats_cumulative: v4 で作った累積値がエポック日に変換されている
+        try (ResultSet rs = query("SELECT player_id, epoch_day, cum_kills, cum_distance, cum_achievements " +
+                "FROM player_stats_cumulative ORDER BY player_id, epoch_day")) {
+            assertTrue(rs.next());
+            assertEquals(alice, rs.getInt("player_id"));
+            assertEquals(DAY1.toEpochDay(), rs.getLong("epoch_day"));
+            assertEquals(2, rs.getInt("cum_kills"));
+
+            assertTrue(rs.next());
+            assertEquals(DAY2.toEpochDay(), rs.getLong("epoch_day"));
+            assertEquals(5, rs.getInt("cum_kills"));
+            assertEquals(15.0, rs.getDouble("cum_distance"));
+            assertEquals(2, rs.getInt("cum_achievements"));
+
+            assertTrue(rs.next());
+            assertEquals(bob, rs.getInt("player_id"));
+            assertEquals(1, rs.getInt("cum_kills"));
+
+            assertFalse(rs.next());
+        }
+
+        // player_advancements: 解除済みの実績が進捗IDのビット集合になっている
+        Map<String, Integer> ids = new HashMap<>();
+        try (ResultSet rs = query("SELECT advancement_id, advancement_key FROM advancement_keys")) {
+            while (rs.next()) {
+                ids.put(rs.getString("advancement_key"), rs.getInt("advancement_id"));
+            }
+        }
+        assertEquals(2, ids.size());
+
+        BitSet aliceUnlocked = unlocked(alice);
+        assertEquals(2, aliceUnlocked.cardinality());
+        assertTrue(aliceUnlocked.get(ids.get("minecraft:story/root")));
+        assertTrue(aliceUnlocked.get(ids.get("minecraft:story/mine_stone")));
+
+        BitSet bobUnlocked = unlocked(bob);
+        assertEquals(1, bobUnlocked.cardinality());
+        assertTrue(bobUnlocked.get(ids.get("minecraft:story/root")));
+
+        try (ResultSet rs = query("SELECT COUNT(*) FROM sqlite_master WHERE name = 'player_achievements'")) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    private void execute(String... statements) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    // 結果を閉じると文も閉じる
+    private ResultSet query(String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.closeOnCompletion();
+        return statement.executeQuery(sql);
+    }
+
+    private BitSet unlocked(int playerId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT unlocked FROM player_advancements WHERE player_id = ?")) {
+            ps.setInt(1, playerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return BitSet.valueOf(rs.getBytes(1));
+            }
+        }
+    }
+
+    private static UUID uuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,164 @@
+package minecraftdiscord.database;
+
+import org.bukkit.entity.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatBufferTest {
+
+    private static final UUID PLAYER = new UUID(1, 1);
+    private static final ZoneId ZONE = ZoneOffset.ofHours(9);
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 31);
+
+    // テストから時刻を進められる時計
+    private static final class MutableClock extends Clock {
+        private long millis;
+
+        private MutableClock(LocalDateTime time) {
+            set(time);
+        }
+
+        void set(LocalDateTime time) {
+            millis = time.atZone(ZONE).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    @Test
+    void restoreMergesFailedDeltasWithLaterOnes() {
+        StatBuffer buffer = new StatBuffer();
+        buffer.addKill(PLAYER, EntityType.ZOMBIE);
+        buffer.addDistance(PLAYER, 1.5);
+        buffer.addAchievement(PLAYER, 3);
+        Collection<StatDelta> failed = buffer.drainAll();
+
+        // 書き込み中に溜まった差分
+        buffer.addKill(PLAYER, EntityType.ZOMBIE);
+        buffer.addKill(PLAYER, EntityType.CREEPER);
+        buffer.addDeath(PLAYER);
+        buffer.addAchievement(PLAYER, 5);
+
+        buffer.restore(failed);
+
+        List<StatDelta> drained = buffer.drain(PLAYER);
+        assertEquals(1, drained.size());
+        StatDelta delta = drained.get(0);
+        assertEquals(3, delta.getKills());
+        assertEquals(2, delta.getKillsByType()[EntityType.ZOMBIE.ordinal()]);
+        assertEquals(1, delta.getKillsByType()[EntityType.CREEPER.ordinal()]);
+        assertEquals(1, delta.getDeaths());
+        assertEquals(1.5, delta.getDistance());
+        assertTrue(delta.getAchievementIds().get(3));
+        assertTrue(delta.getAchievementIds().get(5));
+        assertTrue(buffer.drain(PLAYER).isEmpty());
+    }
+
+    @Test
+    void restoreIntoAnEmptyBuffer() {
+        StatBuffer buffer = new StatBuffer();
+        buffer.addDeath(PLAYER);
+        buffer.restore(buffer.drainAll());
+
+        Collection<StatDelta> deltas = buffer.drainAll();
+        assertEquals(1, deltas.size());
+        StatDelta delta = deltas.iterator().next();
+        assertEquals(1, delta.getDeaths());
+        assertNull(delta.getKillsByType());
+        assertNull(delta.getAchievementIds());
+    }
+
+    @Test
+    void deltasAreKeptPerDayAcrossMidnight() {
+        MutableClock clock = new MutableClock(DAY.atTime(23, 59, 50));
+        StatBuffer buffer = new StatBuffer(clock);
+        buffer.addKill(PLAYER, EntityType.ZOMBIE);
+        buffer.addAchievement(PLAYER, 3);
+
+        clock.set(DAY.plusDays(1).atTime(0, 0, 5));
+        buffer.addKill(PLAYER, EntityType.ZOMBIE);
+        buffer.addDeath(PLAYER);
+
+        List<StatDelta> deltas = List.copyOf(buffer.drainAll());
+        assertEquals(2, deltas.size());
+
+        StatDelta before = deltas.get(0);
+        assertEquals(DAY.toEpochDay(), before.getEpochDay());
+        assertEquals(1, before.getKills());
+        assertEquals(0, before.getDeaths());
+        assertTrue(before.getAchievementIds().get(3));
+
+        StatDelta after = deltas.get(1);
+        assertEquals(DAY.plusDays(1).toEpochDay(), after.getEpochDay());
+        assertEquals(1, after.getKills());
+        assertEquals(1, after.getDeaths());
+        assertNull(after.getAchievementIds());
+    }
+
+    @Test
+    void distanceIsSplitAtMidnight() {
+        MutableClock clock = new MutableClock(DAY.plusDays(1).atTime(0, 0, 2));
+        StatBuffer buffer = new StatBuffer(clock);
+        long since = DAY.atTime(23, 59, 52).atZone(ZONE).toInstant().toEpochMilli();
+
+        // 10秒のうち8秒が前日
+        buffer.addDistance(PLAYER, 100.0, since);
+
+        List<StatDelta> deltas = buffer.drain(PLAYER);
+        assertEquals(2, deltas.size());
+        assertEquals(DAY.toEpochDay(), deltas.get(0).getEpochDay());
+        assertEquals(80.0, deltas.get(0).getDistance(), 1e-9);
+        assertEquals(DAY.plusDays(1).toEpochDay(), deltas.get(1).getEpochDay());
+        assertEquals(20.0, deltas.get(1).getDistance(), 1e-9);
+    }
+
+    @Test
+    void restoreKeepsTheOriginalDay() {
+        MutableClock clock = new MutableClock(DAY.atTime(23, 59, 59));
+        StatBuffer buffer = new StatBuffer(clock);
+        buffer.addDeath(PLAYER);
+        Collection<StatDelta> failed = buffer.drainAll();
+
+        clock.set(DAY.plusDays(1).atTime(0, 0, 1));
+        buffer.addDeath(PLAYER);
+        buffer.restore(failed);
+
+        List<StatDelta> deltas = buffer.drain(PLAYER);
+        assertEquals(2, deltas.size());
+        assertEquals(DAY.toEpochDay(), deltas.get(0).getEpochDay());
+        assertEquals(1, deltas.get(0).getDeaths());
+        assertEquals(DAY.plusDays(1).toEpochDay(), deltas.get(1).getEpochDay());
+        assertEquals(1, deltas.get(1).getDeaths());
+    }
+}
@@ -0,0 +1,115 @@
+package minecraftdiscord.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatRetentionTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+    private static final int PLAYER = 1;
+
+    private Connection connection;
+    private StatRetention retention;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        KillTypeCodec.registerFunctions(connection);
+        new SchemaMigrator(connection, Logger.getLogger("StatRetentionTest")).migrate();
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO players (player_id, uuid) VALUES (?, ?)")) {
+            ps.setInt(1, PLAYER);
+            ps.setBytes(2, new byte[16]);
+            ps.executeUpdate();
+        }
+        retention = new StatRetention(connection::prepareStatement);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    private void insertDay(LocalDate day, int kills, double x, double y, double z) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO player_stats (player_id, epoch_day, kills, last_x, last_y, last_z) VALUES (?, ?, ?, ?, ?, ?)")) {
+            ps.setInt(1, PLAYER);
+            ps.setLong(2, day.toEpochDay());
+            ps.setInt(3, kills);
+            ps.setDouble(4, x);
+            ps.setDouble(5, y);
+            ps.setDouble(6, z);
+            ps.executeUpdate();
+        }
+    }
+
+    // 日付順の「日付 粒度 キル数 座標」
+    private List<String> rows() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (ResultSet rs = connection.createStatement().executeQuery(
+                "SELECT epoch_day, granularity, kills, last_x, last_y, last_z FROM player_stats ORDER BY epoch_day")) {
+            while (rs.next()) {
+                rows.add(LocalDate.ofEpochDay(rs.getLong(1)) + " " + rs.getString(2) + " " + rs.getInt(3)
+                        + " " + rs.getDouble(4) + "," + rs.getDouble(5) + "," + rs.getDouble(6));
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void deletesEmptyDaysButKeepsThoseWithAPosition() throws SQLException {
+        insertDay(TODAY.minusDays(10), 0, 0, 0, 0);
+        insertDay(TODAY.minusDays(9), 0, 12.5, 64, -3);
+
+        retention.apply(TODAY, 90, 365);
+
+        assertEquals(List.of("2026-10-09 day 0 12.5,64.0,-3.0"), rows());
+    }
+
+    @Test
+    void collapsesOldDaysIntoWeeksAndMonthsKeepingTheLastPosition() throws SQLException {
+        // 2025-09 は月単位、2026-08-03 の週は週単位にまとまり、区切り（2026-09-07）以降は日単位のまま残る
+        insertDay(LocalDate.of(2025, 9, 10), 4, 7, 8, 9);
+        insertDay(LocalDate.of(2025, 9, 20), 5, 0, 0, 0);
+        insertDay(LocalDate.of(2026, 8, 3), 1, 0, 0, 0);
+        insertDay(LocalDate.of(2026, 8, 4), 2, 0, 0, 0);
+        insertDay(LocalDate.of(2026, 8, 6), 3, 1, 2, 3);
+        insertDay(LocalDate.of(2026, 8, 8), 1, 4, 5, 6);
+        insertDay(LocalDate.of(2026, 9, 10), 2, 0, 0, 0);
+
+        retention.apply(TODAY, 35, 365);
+
+        List<String> expected = List.of(
+                "2025-09-01 month 9 7.0,8.0,9.0",
+                "2026-08-03 week 7 4.0,5.0,6.0",
+                "2026-09-10 day 2 0.0,0.0,0.0");
+        assertEquals(expected, rows());
+
+        // 既にまとめた行はもう一度実行しても変わらない
+        retention.apply(TODAY, 35, 365);
+        assertEquals(expected, rows());
+    }
+
+    @Test
+    void carriesThePositionFromWeeksIntoMonths() throws SQLException {
+        insertDay(LocalDate.of(2026, 8, 4), 2, 4, 5, 6);
+        retention.apply(TODAY, 35, 365);
+
+        // 翌年、週の行が月の行にまとまる
+        retention.apply(TODAY.plusYears(1), 35, 365);
+
+        assertEquals(List.of("2026-08-01 month 2 4.0,5.0,6.0"), rows());
+    }
+}
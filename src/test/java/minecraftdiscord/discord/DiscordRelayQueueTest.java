@@ -0,0 +1,149 @@
+package minecraftdiscord.discord;
+
+import minecraftdiscord.utils.MessageUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiscordRelayQueueTest {
+
+    private static final Logger LOGGER = Logger.getLogger("DiscordRelayQueueTest");
+
+    // 送信されたメッセージを記録する送信先
+    private static final class FakeSink implements DiscordRelayQueue.Sink {
+        private final List<RelayMessage> sent = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch latch;
+
+        private FakeSink(int expectedMessages) {
+            this.latch = new CountDownLatch(expectedMessages);
+        }
+
+        @Override
+        public CompletableFuture<?> send(RelayMessage message) {
+            sent.add(message);
+            latch.countDown();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    // 待ち時間を長くして、送信スレッドより先にテストから take を呼べるようにする
+    private static DiscordRelayQueue idleQueue(DiscordRelayQueue.Sink sink) {
+        return new DiscordRelayQueue(LOGGER, sink, 60_000, 60_000, 1000, 100);
+    }
+
+    @Test
+    void takeCoalescesConsecutiveLinesOfTheSameAuthor() {
+        DiscordRelayQueue queue = idleQueue(new FakeSink(0));
+        queue.enqueue(new RelayMessage("alice", null, "a1"));
+        queue.enqueue(new RelayMessage("alice", null, "a2"));
+        queue.enqueue(new RelayMessage("bob", null, "b1"));
+        queue.enqueue(new RelayMessage("alice", null, "a3"));
+
+        int[] lines = {0};
+        RelayMessage first = queue.take(lines);
+        assertEquals("alice", first.getUsername());
+        assertEquals("a1\na2", first.getContent());
+        assertEquals(2, lines[0]);
+
+        assertEquals("b1", queue.take(lines).getContent());
+        assertEquals("a3", queue.take(lines).getContent());
+        assertEquals(4, lines[0]);
+        assertNull(queue.take(lines));
+    }
+
+    @Test
+    void takeSplitsAtTheMaximumContentLength() {
+        DiscordRelayQueue queue = idleQueue(new FakeSink(0));
+        String line = "x".repeat(700);
+        for (int i = 0; i < 4; i++) {
+            queue.enqueue(new RelayMessage(null, null, line));
+        }
+
+        int[] lines = {0};
+        RelayMessage first = queue.take(lines);
+        assertEquals(2, lines[0]);
+        assertEquals(700 * 2 + 1, first.getContent().length());
+
+        // 3行目を足すと 2102 文字になるため次のメッセージに回る
+        assertTrue(700 * 3 + 2 > MessageUtils.MAX_DISCORD_CONTENT_LENGTH);
+        assertEquals(700 * 2 + 1, queue.take(lines).getContent().length());
+        assertEquals(4, lines[0]);
+    }
+
+    @Test
+    void adaptDoublesWhenLimitedAndShrinksGradually() {
+        DiscordRelayQueue queue = new DiscordRelayQueue(LOGGER, new FakeSink(0), 100, 1000, 1000, 100);
+        assertEquals(100, queue.getWindowMillis());
+
+        queue.adapt(true);
+        assertEquals(200, queue.getWindowMillis());
+        queue.adapt(true);
+        queue.adapt(true);
+        assertEquals(800, queue.getWindowMillis());
+        queue.adapt(true);
+        assertEquals(1000, queue.getWindowMillis());
+
+        // 1/4 ずつ戻り、最短の待ち時間より短くはならない
+        queue.adapt(false);
+        assertEquals(750, queue.getWindowMillis());
+        for (int i = 0; i < 20; i++) {
+            queue.adapt(false);
+        }
+        assertEquals(100, queue.getWindowMillis());
+    }
+
+    @Test
+    void sendsLinesQueuedDuringTheWindowAsOneMessage() throws InterruptedException {
+        FakeSink sink = new FakeSink(1);
+        DiscordRelayQueue queue = new DiscordRelayQueue(LOGGER, sink, 200, 1000, 1000, 100);
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(new RelayMessage(null, null, "line " + i));
+        }
+
+        assertTrue(sink.latch.await(5, TimeUnit.SECONDS));
+        queue.close();
+        assertEquals(1, sink.sent.size());
+        assertEquals(10, sink.sent.get(0).getContent().split("\n").length);
+        assertTrue(sink.sent.get(0).getContent().startsWith("line 0\nline 1\n"));
+    }
+
+    @Test
+    void slowSendsWidenTheWindow() throws InterruptedException {
+        CountDownLatch slowSent = new CountDownLatch(1);
+        DiscordRelayQueue.Sink slowSink = message -> CompletableFuture.runAsync(slowSent::countDown,
+                CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+        DiscordRelayQueue queue = new DiscordRelayQueue(LOGGER, slowSink, 10, 1000, 50, 100);
+        queue.enqueue(new RelayMessage(null, null, "slow"));
+
+        assertTrue(slowSent.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.getWindowMillis() == 10 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        queue.close();
+        assertEquals(20, queue.getWindowMillis());
+    }
+
+    @Test
+    void dropsLinesBeyondThePendingLimit() {
+        FakeSink sink = new FakeSink(0);
+        DiscordRelayQueue queue = new DiscordRelayQueue(LOGGER, sink, 60_000, 60_000, 1000, 3);
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(new RelayMessage(null, null, "line " + i));
+        }
+
+        int[] lines = {0};
+        assertEquals("line 0\nline 1\nline 2", queue.take(lines).getContent());
+        assertNull(queue.take(lines));
+    }
+}
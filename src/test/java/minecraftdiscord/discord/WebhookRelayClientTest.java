@@ -0,0 +1,151 @@
+package minecraftdiscord.discord;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ローカルのHTTPサーバーをWebhookの代わりにして、応答ごとの送り先の選び方を確かめる
+ */
+class WebhookRelayClientTest {
+
+    // 1回分の応答（ステータスとヘッダー）
+    private record Reply(int status, Map<String, String> headers) {
+    }
+
+    private static final Reply OK = new Reply(204, Map.of());
+
+    private HttpServer server;
+    // Webhookごとの、これから返す応答（空の場合は OK）
+    private final Map<String, ConcurrentLinkedQueue<Reply>> replies = new ConcurrentHashMap<>();
+    // 受け取ったリクエスト（パスと本文）
+    private final List<String[]> received = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        received.add(new String[]{path, body});
+
+        Reply reply = replies.computeIfAbsent(path, key -> new ConcurrentLinkedQueue<>()).poll();
+        if (reply == null) {
+            reply = OK;
+        }
+        reply.headers().forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        if (reply.status() == 204) {
+            exchange.sendResponseHeaders(204, -1);
+        } else {
+            byte[] response = "{\"message\": \"error\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(reply.status(), response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+        exchange.close();
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private WebhookRelayClient client(String... paths) {
+        List<String> urls = new ArrayList<>();
+        for (String path : paths) {
+            urls.add(url(path));
+        }
+        return new WebhookRelayClient(Logger.getLogger("WebhookRelayClientTest"), urls, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void postsTheMessageWithMentionsDisabled() {
+        client("/hook1").send(new RelayMessage("Steve", "https://example.com/steve.png", "hello @everyone"))
+                .orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals(1, received.size());
+        assertEquals("/hook1", received.get(0)[0]);
+        DataObject json = DataObject.fromJson(received.get(0)[1]);
+        assertEquals("hello @everyone", json.getString("content"));
+        assertEquals("Steve", json.getString("username"));
+        assertEquals("https://example.com/steve.png", json.getString("avatar_url"));
+        assertTrue(json.getObject("allowed_mentions").getArray("parse").isEmpty());
+    }
+
+    @Test
+    void omitsUsernamesDiscordRejects() {
+        assertTrue(WebhookRelayClient.isUsableUsername("Steve"));
+        assertFalse(WebhookRelayClient.isUsableUsername("DiscordFan"));
+        assertFalse(WebhookRelayClient.isUsableUsername("xX_CLYDE_Xx"));
+
+        client("/hook1").send(new RelayMessage("DiscordFan", null, "**DiscordFan**: hi"))
+                .orTimeout(5, TimeUnit.SECONDS).join();
+
+        DataObject json = DataObject.fromJson(received.get(0)[1]);
+        assertFalse(json.hasKey("username"));
+        assertEquals("**DiscordFan**: hi", json.getString("content"));
+    }
+
+    @Test
+    void retriesOnAnotherWebhookAfterTooManyRequests() {
+        replies.computeIfAbsent("/hook1", key -> new ConcurrentLinkedQueue<>())
+                .add(new Reply(429, Map.of("Retry-After", "5")));
+        WebhookRelayClient client = client("/hook1", "/hook2");
+
+        client.send(new RelayMessage(null, null, "first")).orTimeout(5, TimeUnit.SECONDS).join();
+        // 制限中の hook1 は解除まで使わない
+        client.send(new RelayMessage(null, null, "second")).orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals(3, received.size());
+        assertEquals("/hook1", received.get(0)[0]);
+        assertEquals("/hook2", received.get(1)[0]);
+        assertEquals("/hook2", received.get(2)[0]);
+        assertEquals("first", DataObject.fromJson(received.get(1)[1]).getString("content"));
+        assertEquals("second", DataObject.fromJson(received.get(2)[1]).getString("content"));
+    }
+
+    @Test
+    void waitsForTheResetWhenNoRequestsRemain() {
+        replies.computeIfAbsent("/hook1", key -> new ConcurrentLinkedQueue<>())
+                .add(new Reply(204, Map.of("X-RateLimit-Remaining", "0", "X-RateLimit-Reset-After", "0.5")));
+        WebhookRelayClient client = client("/hook1");
+
+        client.send(new RelayMessage(null, null, "first")).orTimeout(5, TimeUnit.SECONDS).join();
+        long started = System.nanoTime();
+        client.send(new RelayMessage(null, null, "second")).orTimeout(5, TimeUnit.SECONDS).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertEquals(2, received.size());
+        assertTrue(elapsedMillis >= 400, "解除を待たずに送信した: " + elapsedMillis + "ms");
+    }
+}
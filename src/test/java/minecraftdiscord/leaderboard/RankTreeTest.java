@@ -0,0 +1,73 @@
+package minecraftdiscord.leaderboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RankTreeTest {
+
+    @Test
+    void ranksFollowTheOrder() {
+        RankTree<Integer> tree = new RankTree<Integer>(Comparator.reverseOrder());
+        for (int value : new int[]{5, 1, 9, 3, 7}) {
+            tree.insert(value);
+        }
+
+        assertEquals(5, tree.size());
+        assertEquals(0, tree.rankOf(9));
+        assertEquals(2, tree.rankOf(5));
+        assertEquals(4, tree.rankOf(1));
+        // 含まれていない値は、その値より前にある要素の数
+        assertEquals(3, tree.rankOf(4));
+
+        List<Integer> first = new ArrayList<>();
+        tree.collectFirst(3, first);
+        assertEquals(List.of(9, 7, 5), first);
+    }
+
+    @Test
+    void matchesASortedListUnderRandomInsertsAndRemoves() {
+        Random random = new Random(42);
+        RankTree<Integer> tree = new RankTree<Integer>(Comparator.naturalOrder());
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(1000) * 10000 + i;
+            if (!expected.isEmpty() && random.nextInt(3) == 0) {
+                Integer removed = expected.remove(random.nextInt(expected.size()));
+                tree.remove(removed);
+            } else {
+                expected.add(value);
+                tree.insert(value);
+            }
+        }
+        Collections.sort(expected);
+
+        assertEquals(expected.size(), tree.size());
+        for (int i = 0; i < expected.size(); i += 37) {
+            assertEquals(i, tree.rankOf(expected.get(i)));
+        }
+        List<Integer> first = new ArrayList<>();
+        tree.collectFirst(100, first);
+        assertEquals(expected.subList(0, 100), first);
+    }
+
+    @Test
+    void removingAMissingValueChangesNothing() {
+        RankTree<Integer> tree = new RankTree<Integer>(Comparator.naturalOrder());
+        tree.insert(1);
+        tree.insert(2);
+        tree.remove(3);
+        assertEquals(2, tree.size());
+
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertEquals(0, tree.rankOf(1));
+    }
+}
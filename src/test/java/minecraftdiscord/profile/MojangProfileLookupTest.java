@@ -0,0 +1,91 @@
+package minecraftdiscord.profile;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * ローカルのHTTPサーバーをMojang APIの代わりにして、応答の読み取り方を確かめる
+ */
+class MojangProfileLookupTest {
+
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    // 名前ごとに Mojang API と同じ形の応答を返す
+    private void handle(HttpExchange exchange) throws IOException {
+        String name = exchange.getRequestURI().getPath().substring(1);
+        switch (name) {
+            case "Notch" -> {
+                byte[] body = "{\"id\":\"069a79f444e94726a5befca90e38aaf5\",\"name\":\"Notch\"}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            case "Nobody" -> exchange.sendResponseHeaders(204, -1);
+            case "Missing" -> {
+                byte[] body = "{\"errorMessage\":\"Couldn't find any profile with name Missing\"}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(404, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            default -> exchange.sendResponseHeaders(500, -1);
+        }
+        exchange.close();
+    }
+
+    private MojangProfileLookup lookup() {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new MojangProfileLookup(Logger.getLogger("MojangProfileLookupTest"), url, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void existingNameIsParsed() {
+        ResolvedProfile profile = lookup().lookup("Notch").join();
+        assertEquals(UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5"), profile.getUuid());
+        assertEquals("Notch", profile.getName());
+    }
+
+    @Test
+    void noContentMeansNoProfile() {
+        assertNull(lookup().lookup("Nobody").join());
+    }
+
+    @Test
+    void notFoundMeansNoProfile() {
+        assertNull(lookup().lookup("Missing").join());
+    }
+
+    @Test
+    void serverErrorMeansNoProfile() {
+        assertNull(lookup().lookup("Broken").join());
+    }
+}
@@ -0,0 +1,74 @@
+package minecraftdiscord.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PlayerNameResolverTest {
+
+    private static final UUID STEVE = new UUID(1, 1);
+    private static final UUID ALEX = new UUID(2, 2);
+
+    // 問い合わせた回数を数え、Alex だけを見つける
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final ProfileLookup lookup = name -> {
+        lookups.incrementAndGet();
+        return CompletableFuture.completedFuture(
+                name.equalsIgnoreCase("Alex") ? new ResolvedProfile(ALEX, "Alex") : null);
+    };
+
+    private PlayerNameResolver resolver(Map<UUID, String> names) {
+        return new PlayerNameResolver(Logger.getLogger("PlayerNameResolverTest"), lookup, names);
+    }
+
+    @Test
+    void indexedNameIsResolvedWithoutLookup() {
+        PlayerNameResolver resolver = resolver(Map.of(STEVE, "Steve"));
+
+        ResolvedProfile profile = resolver.resolve("steve").join();
+        assertEquals(STEVE, profile.getUuid());
+        assertEquals("Steve", profile.getName());
+        assertEquals(0, lookups.get());
+    }
+
+    @Test
+    void unknownNameIsLookedUpOnceAndRemembered() {
+        PlayerNameResolver resolver = resolver(Map.of());
+
+        assertEquals(ALEX, resolver.resolve("alex").join().getUuid());
+        assertEquals(ALEX, resolver.resolve("ALEX").join().getUuid());
+        assertEquals(1, lookups.get());
+
+        // 見つからない名前は覚えずに毎回問い合わせる
+        assertNull(resolver.resolve("Herobrine").join());
+        assertNull(resolver.resolve("Herobrine").join());
+        assertEquals(3, lookups.get());
+    }
+
+    @Test
+    void invalidNameIsNeverLookedUp() {
+        PlayerNameResolver resolver = resolver(Map.of());
+
+        assertNull(resolver.resolve(null).join());
+        assertNull(resolver.resolve("").join());
+        assertNull(resolver.resolve("not a name").join());
+        assertNull(resolver.resolve("abcdefghijklmnopq").join());
+        assertEquals(0, lookups.get());
+    }
+
+    @Test
+    void joinedPlayerReplacesOldName() {
+        PlayerNameResolver resolver = resolver(Map.of(STEVE, "Steve"));
+        resolver.playerJoined(STEVE, "Steve2");
+
+        assertEquals("Steve2", resolver.resolve("steve2").join().getName());
+        assertEquals(0, lookups.get());
+    }
+}
@@ -0,0 +1,75 @@
+package minecraftdiscord.scheduler;
+
+import minecraftdiscord.database.PlaytimeCredit;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SessionLedgerTest {
+
+    private static final UUID PLAYER = new UUID(1, 1);
+    private static final ZoneId TOKYO = ZoneId.of("Asia/Tokyo");
+
+    private static long millis(String dateTime, ZoneId zoneId) {
+        return LocalDateTime.parse(dateTime).atZone(zoneId).toInstant().toEpochMilli();
+    }
+
+    // 「日付=分」の一覧
+    private static List<String> credits(long startMillis, ZoneId zoneId, long... checkpoints) {
+        List<PlaytimeCredit> credits = new ArrayList<>();
+        long from = startMillis;
+        for (long checkpoint : checkpoints) {
+            SessionLedger.split(PLAYER, startMillis, from, checkpoint, zoneId, credits);
+            from = checkpoint;
+        }
+
+        List<String> result = new ArrayList<>();
+        for (PlaytimeCredit credit : credits) {
+            result.add(LocalDate.ofEpochDay(credit.getEpochDay()) + "=" + credit.getMinutes());
+        }
+        return result;
+    }
+
+    @Test
+    void splitsASessionAtMidnight() {
+        long start = millis("2026-10-17T23:30:30", TOKYO);
+        long end = millis("2026-10-18T00:45:10", TOKYO);
+
+        // 合計は開始からの経過分（74分）で、0時までの29分を前日に加算する
+        assertEquals(List.of("2026-10-17=29", "2026-10-18=45"), credits(start, TOKYO, end));
+    }
+
+    @Test
+    void checkpointsDoNotAccumulateRoundingErrors() {
+        long start = millis("2026-10-17T23:58:20", TOKYO);
+        long[] checkpoints = new long[10];
+        for (int i = 0; i < checkpoints.length; i++) {
+            checkpoints[i] = start + (i + 1) * 90_000L;
+        }
+
+        List<String> split = credits(start, TOKYO, checkpoints);
+        int total = 0;
+        for (String credit : split) {
+            total += Integer.parseInt(credit.substring(credit.indexOf('=') + 1));
+        }
+        assertEquals(15, total);
+        assertEquals("2026-10-17=1", split.get(0));
+    }
+
+    @Test
+    void creditsEveryDayOfALongSessionIncludingShortDstDays() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        long start = millis("2026-03-28T23:00:00", berlin);
+        long end = millis("2026-03-30T01:00:00", berlin);
+
+        // 2026-03-29 は夏時間の開始で23時間
+        assertEquals(List.of("2026-03-28=60", "2026-03-29=1380", "2026-03-30=60"), credits(start, berlin, end));
+    }
+}